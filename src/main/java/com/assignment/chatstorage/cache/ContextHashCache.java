@@ -0,0 +1,45 @@
+package com.assignment.chatstorage.cache;
+
+import com.assignment.chatstorage.config.ChatCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recently written context hashes. Payloads no message references are deleted by the orphan sweep, but only once
+ * they have gone unwritten for longer than an entry here lives (see {@code ContextStore}), so a hash seen here needs no
+ * existence check. Hashes are only added once the transaction that stored them commits. Hit and miss counts are
+ * published as {@code cache.*} metrics with {@code cache=contextHashes}.
+ */
+@Component
+public class ContextHashCache {
+
+    /** How long a stored hash is remembered; storing it again after that refreshes the row's created_at */
+    public static final Duration REMEMBER_FOR = Duration.ofHours(1);
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> cache;
+
+    public ContextHashCache(ChatCacheProperties props, MeterRegistry registry) {
+        this.enabled = props.getContextHashes().isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.getContextHashes().getMaxSize())
+                .expireAfterWrite(REMEMBER_FOR)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "contextHashes");
+    }
+
+    public boolean contains(String hash) {
+        return enabled && cache.getIfPresent(hash) != null;
+    }
+
+    public void remember(String hash) {
+        if (enabled) {
+            AfterCommit.run(() -> cache.put(hash, Boolean.TRUE));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.assignment.chatstorage.cache;
+
+import java.util.UUID;
+
+/**
+ * Hook for propagating session cache invalidations beyond this JVM (e.g. a pub/sub broadcaster in a multi-node
+ * deployment). Implementations receiving a remote invalidation should call {@link SessionMetadataCache#evictLocal}
+ * so the event is not re-broadcast.
+ */
+public interface SessionInvalidationListener {
+
+    void sessionInvalidated(UUID sessionId);
+}
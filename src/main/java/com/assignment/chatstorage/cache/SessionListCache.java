@@ -0,0 +1,46 @@
+package com.assignment.chatstorage.cache;
+
+import com.assignment.chatstorage.config.ChatCacheProperties;
+import com.assignment.chatstorage.dto.Dtos.SessionView;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.List;
+import java.util.function.Function;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user cache of the full, ordered list of non-deleted sessions. Favorite filtering is applied on the cached list,
+ * so both sidebar views share one entry. Size-bounded by user (Caffeine's recency/frequency eviction) and invalidated
+ * by every write that changes a user's list.
+ */
+@Slf4j
+@Component
+public class SessionListCache {
+
+    @Getter
+    private final boolean enabled;
+    private final Cache<String, List<SessionView>> cache;
+
+    public SessionListCache(ChatCacheProperties props, MeterRegistry registry) {
+        this.enabled = props.getSessionList().isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.getSessionList().getMaxUsers())
+                .expireAfterWrite(props.getSessionList().getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "sessionList");
+    }
+
+    public List<SessionView> get(String userId, Function<String, List<SessionView>> loader) {
+        return cache.get(userId, loader);
+    }
+
+    public void invalidate(String userId) {
+        log.debug("Evicting session list userId={}", userId);
+        AfterCommit.evict(() -> cache.invalidate(userId));
+    }
+}
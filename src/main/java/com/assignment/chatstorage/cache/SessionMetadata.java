@@ -0,0 +1,18 @@
+package com.assignment.chatstorage.cache;
+
+import java.util.UUID;
+
+/**
+ * The slice of a session the write and read paths need: that it exists, who owns it, whether it was soft-deleted and
+ * whether its messages were moved to the archive tier.
+ */
+public record SessionMetadata(UUID id, String userId, boolean deleted, boolean archived) {
+
+    public SessionMetadata(UUID id, String userId, Boolean deleted, Boolean archived) {
+        this(id, userId, Boolean.TRUE.equals(deleted), Boolean.TRUE.equals(archived));
+    }
+
+    public SessionMetadata(UUID id, String userId, boolean deleted) {
+        this(id, userId, deleted, false);
+    }
+}
@@ -0,0 +1,79 @@
+package com.assignment.chatstorage.cache;
+
+import com.assignment.chatstorage.config.ChatCacheProperties;
+import com.assignment.chatstorage.repository.ChatSessionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, TTL-evicted cache of {@link SessionMetadata} in front of {@link ChatSessionRepository}. Hit, miss and
+ * eviction counts are published as {@code cache.*} metrics with {@code cache=sessionMetadata}.
+ */
+@Slf4j
+@Component
+public class SessionMetadataCache {
+
+    private final ChatSessionRepository sessionRepo;
+    private final List<SessionInvalidationListener> listeners;
+    private final boolean enabled;
+    private final Cache<UUID, SessionMetadata> cache;
+
+    public SessionMetadataCache(ChatSessionRepository sessionRepo, ChatCacheProperties props, MeterRegistry registry,
+            List<SessionInvalidationListener> listeners) {
+        this.sessionRepo = sessionRepo;
+        this.listeners = listeners;
+        this.enabled = props.getSession().isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.getSession().getMaxSize())
+                .expireAfterWrite(props.getSession().getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "sessionMetadata");
+    }
+
+    public Optional<SessionMetadata> get(UUID id) {
+        if (!enabled) {
+            return sessionRepo.findMetadataById(id);
+        }
+        return Optional.ofNullable(cache.get(id, key -> sessionRepo.findMetadataById(key).orElse(null)));
+    }
+
+    /**
+     * Resolves several sessions, loading every miss with a single query. Unknown ids are absent from the result.
+     */
+    public Map<UUID, SessionMetadata> getAll(Collection<UUID> ids) {
+        if (!enabled) {
+            return loadAll(ids);
+        }
+        return cache.getAll(ids, this::loadAll);
+    }
+
+    /**
+     * Drops the entry now and again once the current transaction commits, so a concurrent reader cannot re-cache the
+     * pre-commit state. Registered {@link SessionInvalidationListener}s are notified.
+     */
+    public void invalidate(UUID id) {
+        AfterCommit.evict(() -> evictLocal(id));
+        listeners.forEach(listener -> listener.sessionInvalidated(id));
+    }
+
+    public void evictLocal(UUID id) {
+        log.debug("Evicting session metadata id={}", id);
+        cache.invalidate(id);
+    }
+
+    private Map<UUID, SessionMetadata> loadAll(Collection<? extends UUID> ids) {
+        return sessionRepo.findMetadataByIdIn(ids).stream().collect(Collectors.toMap(SessionMetadata::id, Function.identity()));
+    }
+}
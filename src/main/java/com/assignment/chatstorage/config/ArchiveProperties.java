@@ -0,0 +1,31 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "archive")
+public class ArchiveProperties {
+
+    /** Run the job that moves inactive sessions to the archive tier */
+    private boolean enabled = false;
+
+    /** When to run it */
+    private String cron = "0 30 3 * * *";
+
+    /** Archive sessions whose newest message is older than this */
+    private Duration inactiveAfter = Duration.ofDays(30);
+
+    /** Sessions selected per round; the job keeps going while full rounds make progress */
+    private int batchSize = 100;
+
+    /** Decompressed archives kept in memory while a client pages through them, by approximate message text size */
+    private DataSize readCacheSize = DataSize.ofMegabytes(64);
+
+    /** How long an unused decompressed archive stays cached */
+    private Duration readCacheTtl = Duration.ofMinutes(5);
+}
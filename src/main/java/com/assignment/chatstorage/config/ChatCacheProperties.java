@@ -0,0 +1,60 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "cache")
+public class ChatCacheProperties {
+
+    /** Session metadata (existence, owner, deleted flag) used by the write path */
+    private Session session = new Session();
+
+    /** Per-user ordered session lists served to the sidebar */
+    private SessionList sessionList = new SessionList();
+
+    /** Hashes of context payloads known to be stored, so repeated contexts skip the existence check */
+    private ContextHashes contextHashes = new ContextHashes();
+
+    @Getter
+    @Setter
+    public static class Session {
+
+        /** Enable/disable the session metadata cache */
+        private boolean enabled = true;
+
+        /** Maximum number of sessions kept in memory */
+        private long maxSize = 10_000;
+
+        /** Time after which an entry is reloaded from the database */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class SessionList {
+
+        /** Enable/disable the per-user session list cache */
+        private boolean enabled = true;
+
+        /** Maximum number of users whose lists are kept; least recently used users are evicted first */
+        private long maxUsers = 5_000;
+
+        /** Upper bound on staleness for changes made by other nodes */
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class ContextHashes {
+
+        /** Enable/disable the context hash cache */
+        private boolean enabled = true;
+
+        /** Maximum number of hashes kept; entries are 64-character strings */
+        private long maxSize = 10_000;
+    }
+}
@@ -0,0 +1,47 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "concurrency")
+public class ConcurrencyLimitProperties {
+
+    /** Shed requests beyond the adaptive in-flight limit with a 503 */
+    private boolean enabled = true;
+
+    /** Limit before any latency has been observed */
+    private int initialLimit = 50;
+
+    /** The limit never shrinks below this */
+    private int minLimit = 10;
+
+    /** ...nor grows above this; keep it under the servlet container's thread count */
+    private int maxLimit = 200;
+
+    /** Recent latency may reach this multiple of the long-term average before the limit shrinks */
+    private double rttTolerance = 2.0;
+
+    /** Weight of each new limit estimate against the current limit (0..1) */
+    private double smoothing = 0.2;
+
+    /** Latency samples are averaged over windows of this length... */
+    private Duration window = Duration.ofMillis(100);
+
+    /** ...holding at least this many requests */
+    private int windowSamples = 10;
+
+    /** Share of the limit reads (GET, HEAD) may take; writes may use all of it, so reads are shed first */
+    private double readShare = 0.8;
+
+    /** Sent as Retry-After with a 503 */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /** Paths to skip (prefix match) */
+    private List<String> skipPaths = new ArrayList<>();
+}
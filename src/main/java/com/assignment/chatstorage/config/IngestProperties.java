@@ -0,0 +1,29 @@
+package com.assignment.chatstorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    /** Route addMessage through the group-commit queue instead of one transaction per request */
+    private boolean groupCommitEnabled = false;
+
+    /** Maximum number of messages waiting to be written */
+    private int queueCapacity = 10_000;
+
+    /** Flush a group once it reaches this many messages */
+    private int maxBatchSize = 200;
+
+    /** Flush a group at the latest this long after its first message arrived */
+    private long maxDelayMillis = 5;
+
+    /** How long a caller may block for queue space before being rejected (0 = reject immediately) */
+    private long offerTimeoutMillis = 50;
+
+    /** How long a caller waits for its group to commit */
+    private long commitTimeoutMillis = 5_000;
+}
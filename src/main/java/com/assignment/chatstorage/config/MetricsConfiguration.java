@@ -0,0 +1,37 @@
+package com.assignment.chatstorage.config;
+
+import com.assignment.chatstorage.metrics.StatementCountInterceptor;
+import com.assignment.chatstorage.metrics.StatementCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Per-request Hibernate statement counts. The service timers come from {@code @Timed} on ChatServiceImpl
+ * (management.observations.annotations.enabled), the Hikari pool meters from Spring Boot.
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+    private final StatementCounter statementCounter = new StatementCounter();
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public MetricsConfiguration(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer statementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCounter);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        registry.ifAvailable(meters -> interceptors.addInterceptor(new StatementCountInterceptor(statementCounter, meters)));
+    }
+}
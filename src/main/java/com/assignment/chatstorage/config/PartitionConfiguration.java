@@ -0,0 +1,9 @@
+package com.assignment.chatstorage.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PartitionProperties.class)
+public class PartitionConfiguration {
+}
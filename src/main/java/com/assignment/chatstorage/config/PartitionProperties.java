@@ -0,0 +1,26 @@
+package com.assignment.chatstorage.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "partition")
+public class PartitionProperties {
+
+    /** Run the message partition maintenance job */
+    private boolean enabled = true;
+
+    /** When to run it (the job also runs once at startup) */
+    private String cron = "0 15 3 * * *";
+
+    /** Monthly partitions to keep created ahead of the current month */
+    private int monthsAhead = 3;
+
+    /** Detach partitions older than this many months (0 = keep every partition attached) */
+    private int retentionMonths = 0;
+
+    /** Drop detached partitions instead of leaving them behind as standalone tables */
+    private boolean dropDetached = false;
+}
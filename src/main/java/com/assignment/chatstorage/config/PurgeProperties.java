@@ -0,0 +1,30 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "purge")
+public class PurgeProperties {
+
+    /** Run the purge on {@link #cron}; manual runs through the actuator endpoint work either way */
+    private boolean enabled = false;
+
+    /** When to run it */
+    private String cron = "0 0 4 * * *";
+
+    /** How long a soft-deleted session is kept before it is removed for good */
+    private Duration gracePeriod = Duration.ofDays(30);
+
+    /** Sessions selected per round; the job keeps going while full rounds make progress */
+    private int batchSize = 100;
+
+    /** Messages removed per DELETE statement, each in its own short transaction */
+    private int chunkSize = 1000;
+
+    /** Pause after every chunk, so the purge leaves room for foreground writes, replication and checkpoints */
+    private Duration chunkPause = Duration.ofMillis(100);
+}
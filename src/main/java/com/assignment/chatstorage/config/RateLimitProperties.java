@@ -1,7 +1,10 @@
 package com.assignment.chatstorage.config;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -14,7 +17,13 @@ public class RateLimitProperties {
     /** Enable/disable rate limiting globally */
     private boolean enabled = true;
 
-    /** Maximum tokens in the bucket (max requests) */
+    /** Where bucket state lives: per instance, or shared by all instances in the database */
+    private Mode mode = Mode.LOCAL;
+
+    /** Settings of {@link Mode#DISTRIBUTED} */
+    private Distributed distributed = new Distributed();
+
+    /** Maximum tokens in the bucket (max requests) of the default tier */
     private int capacity = 100;
 
     /** Number of tokens to refill each period */
@@ -23,6 +32,18 @@ public class RateLimitProperties {
     /** Refill period in seconds */
     private int refillPeriodSeconds = 60;
 
+    /** Named budgets for the API keys listed in them; other keys and client IPs get the default tier above */
+    private Map<String, Tier> tiers = new LinkedHashMap<>();
+
+    /** Token cost by route; the first matching route applies, requests matching none cost one token */
+    private List<Route> routes = new ArrayList<>();
+
+    /**
+     * Buckets kept per kind of key (API key, client IP); least recently used ones are dropped first. Buckets idle for
+     * a full refill period are dropped regardless, as they are full again and a new one behaves the same
+     */
+    private long maxBuckets = 100_000;
+
     /** If true, identify bucket by X-API-KEY; otherwise by client IP */
     private boolean perApiKey = true;
 
@@ -31,5 +52,76 @@ public class RateLimitProperties {
 
     /** Paths to skip filtering (prefix match) */
     private List<String> skipPaths;
+
+    @Getter
+    @Setter
+    public static class Tier {
+
+        /** API keys on this tier */
+        private List<String> apiKeys = new ArrayList<>();
+
+        /** All must have tokens left, e.g. a short burst limit plus a sustained hourly one; the first one is reported in X-RateLimit-Limit */
+        private List<Limit> bandwidths = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Limit {
+
+        /** Tokens the bandwidth holds */
+        private long capacity;
+
+        /** Tokens added back every refill period */
+        private long refillTokens;
+
+        private Duration refillPeriod = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Route {
+
+        /** HTTP method; any method when unset */
+        private String method;
+
+        /** Path pattern, e.g. {@code /api/v1/session/{id}/messages} */
+        private String pattern;
+
+        /** Tokens charged per request (capped at the smallest capacity of the caller's tier) */
+        private long weight = 1;
+
+        /** Query parameter holding the page size; when set the weight is charged once per {@link #sizeUnit} rows */
+        private String sizeParameter;
+
+        /** Rows covered by one weight */
+        private int sizeUnit = 50;
+    }
+
+    public enum Mode {
+        /** Each instance limits on its own; the cluster-wide limit grows with the number of instances */
+        LOCAL,
+        /** Buckets are kept in tbl_rate_limit_buckets and shared by all instances */
+        DISTRIBUTED
+    }
+
+    @Getter
+    @Setter
+    public static class Distributed {
+
+        /**
+         * Tokens an instance may consume locally before synchronising with the shared bucket. Higher values mean fewer
+         * database round trips; the cluster may overshoot the limit by up to this many tokens per instance
+         */
+        private long syncTokens = 10;
+
+        /** Longest time local consumption stays unsynchronised */
+        private Duration syncInterval = Duration.ofSeconds(1);
+
+        /** How often expired shared buckets are deleted */
+        private Duration cleanupInterval = Duration.ofMinutes(1);
+
+        /** Shared buckets deleted per statement once they have expired */
+        private int cleanupBatchSize = 1000;
+    }
 }
 
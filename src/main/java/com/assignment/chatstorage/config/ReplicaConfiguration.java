@@ -0,0 +1,78 @@
+package com.assignment.chatstorage.config;
+
+import com.assignment.chatstorage.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaConfiguration {
+
+    /**
+     * With replicas, the application's DataSource hands out connections lazily: the target is only picked at the first
+     * statement, once the transaction has marked the connection read-only or not. Read-only ones come from
+     * {@link ReplicaRoutingDataSource}, everything else (including Flyway and the jobs) from the primary pool.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "replica", name = "enabled", havingValue = "true")
+    static class Routing {
+
+        private static final Duration REPLICA_CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+
+        @Bean
+        @ConfigurationProperties("spring.datasource.hikari")
+        HikariDataSource primaryDataSource(DataSourceProperties properties) {
+            return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        }
+
+        @Bean(destroyMethod = "close")
+        ReplicaRoutingDataSource replicaDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                ReplicaProperties props, ObjectProvider<MeterRegistry> registry) {
+            List<HikariDataSource> pools = new ArrayList<>();
+            for (String url : props.getUrls()) {
+                HikariDataSource pool = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .driverClassName(properties.determineDriverClassName())
+                        .url(url)
+                        .username(props.getUsername() != null ? props.getUsername() : properties.determineUsername())
+                        .password(props.getPassword() != null ? props.getPassword() : properties.determinePassword())
+                        .build();
+                pool.setPoolName("replica-" + (pools.size() + 1));
+                pool.setMaximumPoolSize(props.getMaximumPoolSize());
+                pool.setReadOnly(true);
+                // Fail fast: a read waiting on an unreachable replica stalls until the next health check removes it
+                pool.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT.toMillis());
+                // A replica that is down at startup is simply out of rotation
+                pool.setInitializationFailTimeout(-1);
+                // Not beans themselves, so Spring Boot's pool metrics would miss them
+                registry.ifAvailable(pool::setMetricRegistry);
+                pools.add(pool);
+            }
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primaryDataSource, pools, props.getMaxLag());
+            routing.checkHealth();
+            return routing;
+        }
+
+        @Bean
+        @Primary
+        DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaDataSource) {
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+            proxy.setReadOnlyDataSource(replicaDataSource);
+            return proxy;
+        }
+    }
+}
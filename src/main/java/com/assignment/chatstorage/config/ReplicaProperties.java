@@ -0,0 +1,37 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "replica")
+public class ReplicaProperties {
+
+    /** Route read-only transactions to the replicas below; everything else stays on spring.datasource */
+    private boolean enabled = false;
+
+    /** JDBC URLs of the read replicas */
+    private List<String> urls = new ArrayList<>();
+
+    /** Replica credentials; the primary's when unset */
+    private String username;
+
+    private String password;
+
+    /** Connections per replica pool */
+    private int maximumPoolSize = 10;
+
+    /** How often each replica is probed */
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    /** Replay lag above which a replica is taken out of rotation until it catches up */
+    private Duration maxLag = Duration.ofSeconds(10);
+
+    /** How long reads of a session (or a user's session list) stay on the primary after this instance wrote it */
+    private Duration pinAfterWrite = Duration.ofSeconds(5);
+}
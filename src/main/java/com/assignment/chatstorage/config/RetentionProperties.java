@@ -0,0 +1,49 @@
+package com.assignment.chatstorage.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "retention")
+public class RetentionProperties {
+
+    /** Run the expiry on {@link #cron}; manual runs through the actuator endpoint work either way */
+    private boolean enabled = false;
+
+    /** When to run it */
+    private String cron = "0 0 2 * * *";
+
+    /** Only report what would expire; nothing is deleted */
+    private boolean dryRun = false;
+
+    /** Policies by userId prefix; the longest matching prefix wins and users matching none keep their data */
+    private List<Policy> policies = new ArrayList<>();
+
+    /** Users expired concurrently; each user is handled by exactly one worker */
+    private int parallelism = 4;
+
+    /** Width of the created_at range walked at a time */
+    private Duration window = Duration.ofDays(1);
+
+    /** Messages removed per DELETE statement, each in its own short transaction */
+    private int chunkSize = 1000;
+
+    /** Pause after every chunk */
+    private Duration chunkPause = Duration.ofMillis(50);
+
+    @Getter
+    @Setter
+    public static class Policy {
+
+        /** userId prefix the policy applies to, e.g. a tenant prefix such as {@code acme:}; empty matches everyone */
+        private String userIdPrefix = "";
+
+        /** Messages and sessions older than this are removed */
+        private Duration ttl;
+    }
+}
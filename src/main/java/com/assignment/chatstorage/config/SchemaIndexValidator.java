@@ -0,0 +1,44 @@
+package com.assignment.chatstorage.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fails startup if an index the repository queries rely on is missing or invalid (e.g. a failed concurrent build),
+ * instead of letting those queries silently degrade into scans.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "schema", name = "validate-indexes", havingValue = "true", matchIfMissing = true)
+public class SchemaIndexValidator implements ApplicationRunner {
+
+    private static final String VALID_INDEXES_SQL = """
+            select c.relname
+            from pg_index i
+            join pg_class c on c.oid = i.indexrelid
+            join pg_namespace n on n.oid = c.relnamespace
+            where n.nspname = current_schema() and i.indisvalid
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final SchemaProperties props;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> present = jdbc.queryForList(VALID_INDEXES_SQL, String.class);
+        List<String> missing = new ArrayList<>(props.getRequiredIndexes());
+        missing.removeAll(present);
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Missing or invalid database indexes: " + missing + ". Run the Flyway migrations.");
+        }
+        log.info("Schema index validation passed for {} indexes", props.getRequiredIndexes().size());
+    }
+}
@@ -0,0 +1,19 @@
+package com.assignment.chatstorage.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "schema")
+public class SchemaProperties {
+
+    /** Fail startup when any of the required indexes is missing */
+    private boolean validateIndexes = true;
+
+    /** Index names the repository queries depend on */
+    private List<String> requiredIndexes = new ArrayList<>();
+}
@@ -11,7 +11,9 @@ import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import java.util.Arrays;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.ApplicationConversionService;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -36,6 +38,12 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${cors.allowed-origins}")
     private String allowedOrigins;
 
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        // Enum query parameters are matched ignoring case, so ?view=preview works as well as ?view=PREVIEW
+        ApplicationConversionService.addApplicationConverters(registry);
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         List<String> origins = Arrays.stream(allowedOrigins.split(",")).map(String::trim).toList();
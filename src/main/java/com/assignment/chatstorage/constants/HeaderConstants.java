@@ -4,6 +4,7 @@ public final class HeaderConstants {
     private HeaderConstants() {}
 
     public static final String API_KEY = "X-API-KEY";
+    public static final String FORWARDED_FOR = "X-Forwarded-For";
 
     public static final String RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
     public static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
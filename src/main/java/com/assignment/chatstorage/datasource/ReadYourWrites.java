@@ -0,0 +1,67 @@
+package com.assignment.chatstorage.datasource;
+
+import com.assignment.chatstorage.config.ReplicaProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-your-writes guard for replica routing. Writes record the session ids and user ids they touched; a read
+ * transaction that then asks for one of them within {@code replica.pin-after-write} is pinned to the primary, because
+ * a replica may not have replayed the write yet. Writes are only known to the instance that made them.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<Object, Boolean> recentWrites;
+
+    public ReadYourWrites(ReplicaProperties props) {
+        this.enabled = props.isEnabled();
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(props.getPinAfterWrite())
+                .build();
+    }
+
+    /** Records a write of the key (a session id or user id), again on commit so the pin is measured from there */
+    public void written(Object key) {
+        if (!enabled) {
+            return;
+        }
+        recentWrites.put(key, Boolean.TRUE);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWrites.put(key, Boolean.TRUE);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pins the current transaction to the primary when the key was written recently. Must run before the transaction's
+     * first statement, which is when its connection is chosen.
+     */
+    public void readOf(Object key) {
+        if (!enabled || recentWrites.getIfPresent(key) == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        PINNED.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                PINNED.remove();
+            }
+        });
+    }
+
+    static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.assignment.chatstorage.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Probes the replicas every {@code replica.health-check-interval} and reports them under {@code /actuator/health}.
+ * Replicas being down leaves the service UP: reads fall back to the primary.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "replica", name = "enabled", havingValue = "true")
+public class ReplicaHealthIndicator implements HealthIndicator {
+
+    private final ReplicaRoutingDataSource replicas;
+
+    @Scheduled(fixedDelayString = "${replica.health-check-interval:5s}")
+    public void check() {
+        replicas.checkHealth();
+    }
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetail("replicas", replicas.status())
+                .withDetail("readsOnPrimary", !replicas.anyHealthy())
+                .build();
+    }
+}
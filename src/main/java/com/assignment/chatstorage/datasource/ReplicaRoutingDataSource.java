@@ -0,0 +1,121 @@
+package com.assignment.chatstorage.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Target of read-only connections: one of the healthy replicas, round robin, or the primary when the transaction is
+ * pinned by {@link ReadYourWrites} or no replica is healthy. {@link #checkHealth()} takes a replica out of rotation
+ * while it cannot be reached or lags more than the configured maximum, and puts it back once it has caught up.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    /*
+     * Seconds since the last replayed transaction, or 0 when everything received has been replayed (an idle primary
+     * writes nothing, so the replay timestamp alone would look like growing lag). 0 on a server that is not a standby.
+     */
+    private static final String LAG_SQL = """
+            select case
+                when not pg_is_in_recovery() or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+            end
+            """;
+
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, Duration maxLag) {
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.maxLag = maxLag;
+        Map<Object, Object> targets = new HashMap<>();
+        replicas.forEach(replica -> targets.put(replica.name(), replica.pool()));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /** The name of the replica to read from; null selects the primary */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (ReadYourWrites.isPinned()) {
+            return null;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.name();
+            }
+        }
+        return null;
+    }
+
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection con = replica.pool().getConnection(); Statement st = con.createStatement();
+                    ResultSet rs = st.executeQuery(LAG_SQL)) {
+                rs.next();
+                replica.lag = Duration.ofMillis((long) (rs.getDouble(1) * 1000));
+                healthy = replica.lag.compareTo(maxLag) <= 0;
+            } catch (SQLException e) {
+                replica.lag = null;
+                healthy = false;
+            }
+            if (healthy && !replica.healthy) {
+                log.info("Replica {} is in rotation (lag {})", replica.name(), replica.lag);
+            } else if (!healthy && replica.healthy) {
+                log.warn("Replica {} is out of rotation (lag {})", replica.name(), replica.lag == null ? "unknown" : replica.lag);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /** Per replica: whether it is in rotation and its last measured lag */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        replicas.forEach(replica -> status.put(replica.name(),
+                Map.of("healthy", replica.healthy, "lag", replica.lag == null ? "unknown" : replica.lag.toString())));
+        return status;
+    }
+
+    public boolean anyHealthy() {
+        return replicas.stream().anyMatch(replica -> replica.healthy);
+    }
+
+    public void close() {
+        replicas.forEach(replica -> replica.pool().close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean healthy;
+        private volatile Duration lag;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private String name() {
+            return pool.getPoolName();
+        }
+
+        private HikariDataSource pool() {
+            return pool;
+        }
+    }
+}
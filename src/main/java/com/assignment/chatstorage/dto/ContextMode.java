@@ -0,0 +1,10 @@
+package com.assignment.chatstorage.dto;
+
+/**
+ * How message views carry their RAG context: the full payload, or only its hash for clients that already hold the
+ * payload (fetch unknown ones from {@code GET /api/v1/session/contexts/{hash}}).
+ */
+public enum ContextMode {
+    FULL,
+    HASH
+}
@@ -0,0 +1,12 @@
+package com.assignment.chatstorage.dto;
+
+import java.util.List;
+
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        String nextCursor,
+        String prevCursor
+) {
+
+}
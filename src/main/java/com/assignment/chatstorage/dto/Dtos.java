@@ -1,13 +1,32 @@
 package com.assignment.chatstorage.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 public class Dtos {
 
+    /** Upper bound on the number of messages accepted by a single batch request */
+    public static final int MAX_MESSAGE_BATCH = 500;
+
+    /** Upper bound on the length of a message's RAG context */
+    public static final int MAX_CONTEXT_LENGTH = 262_144;
+
+    /** Upper bound on the number of sessions changed by a single bulk request */
+    public static final int MAX_BULK_SESSIONS = 100;
+
+    /** Number of characters of content returned by preview listings */
+    public static final int PREVIEW_LENGTH = 200;
+
     public record SessionCreate(@NotBlank String userId, String title) {
 
     }
@@ -20,15 +39,80 @@ public class Dtos {
 
     }
 
-    public record SessionView(UUID id, String userId, String title, boolean isFavorite, LocalDateTime createdAt, LocalDateTime updatedAt) {
+    public record SessionView(UUID id, String userId, String title, boolean isFavorite, LocalDateTime createdAt, LocalDateTime updatedAt,
+                              long messageCount, LocalDateTime lastMessageAt, long contentBytes) {
+
+    }
+
+    public record SessionBulkRequest(@NotNull SessionBulkOperation operation,
+                                     @NotEmpty @Size(max = MAX_BULK_SESSIONS) List<@NotNull UUID> ids) {
+
+    }
+
+    /** Outcome for one id of a bulk request; version is the session's new ETag version when it was updated */
+    public record SessionBulkItem(UUID id, Status status, @JsonInclude(Include.NON_NULL) Long version) {
+
+        public enum Status {
+            UPDATED,
+            NOT_FOUND
+        }
+    }
+
+    public record SessionBulkResult(SessionBulkOperation operation, int updated, List<SessionBulkItem> results) {
+
+    }
+
+    public record MessageCreate(@NotBlank String createdBy, @NotBlank String content, @Size(max = MAX_CONTEXT_LENGTH) String context) {
+
+    }
+
+    public record MessageBatchCreate(@NotEmpty @Size(max = MAX_MESSAGE_BATCH) List<@NotNull @Valid MessageCreate> messages) {
+
+    }
+
+    public record SessionMessageCreate(@NotNull UUID sessionId, @NotNull @Valid MessageCreate message) {
+
+    }
+
+    public record SessionMessageBatchCreate(@NotEmpty @Size(max = MAX_MESSAGE_BATCH) List<@NotNull @Valid SessionMessageCreate> messages) {
+
+    }
+
+    /**
+     * A message. In preview listings {@code content} is cut to {@link #PREVIEW_LENGTH} characters, {@code context} is
+     * left out, and {@code contentLength}/{@code truncated} describe the full body; both are absent otherwise.
+     */
+    public record MessageView(UUID id, UUID sessionId, String createdBy, String content, String context, String contextHash,
+            LocalDateTime createdAt, @JsonInclude(Include.NON_NULL) Integer contentLength,
+            @JsonInclude(Include.NON_NULL) Boolean truncated) {
+
+        public MessageView(UUID id, UUID sessionId, String createdBy, String content, String context, String contextHash,
+                LocalDateTime createdAt) {
+            this(id, sessionId, createdBy, content, context, contextHash, createdAt, null, null);
+        }
+
+        public MessageView withContext(String context) {
+            return new MessageView(id, sessionId, createdBy, content, context, contextHash, createdAt, contentLength, truncated);
+        }
+
+        public MessageView withoutContext() {
+            return context == null ? this : withContext(null);
+        }
 
+        /** Cuts the content the same way the preview queries do: by characters (code points), not UTF-16 units */
+        public MessageView preview() {
+            int length = content.codePointCount(0, content.length());
+            boolean truncated = length > PREVIEW_LENGTH;
+            String preview = truncated ? content.substring(0, content.offsetByCodePoints(0, PREVIEW_LENGTH)) : content;
+            return new MessageView(id, sessionId, createdBy, preview, null, contextHash, createdAt, length, truncated);
+        }
     }
 
-    public record MessageCreate(@NotBlank String createdBy, @NotBlank String content, String context) {
+    public record ContextView(String hash, String context) {
 
     }
 
-    public record MessageView(UUID id, UUID sessionId, String createdBy, String content, String context, LocalDateTime createdAt) {
+    public record SearchHit(UUID sessionId, UUID messageId, LocalDateTime createdAt, float rank, String snippet) {
 
     }
 }
@@ -0,0 +1,83 @@
+package com.assignment.chatstorage.dto;
+
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Subset of a view's fields requested with {@code fields=a,b,c}. Services consult it to skip selecting what nobody
+ * asked for; controllers apply it to serialize only the requested fields, in declaration order.
+ *
+ * @param names requested field names, or null for all fields
+ */
+public record FieldSelection(Set<String> names) {
+
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    private static final ClassValue<Map<String, Method>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> type) {
+            Map<String, Method> accessors = new LinkedHashMap<>();
+            for (RecordComponent component : type.getRecordComponents()) {
+                accessors.put(component.getName(), component.getAccessor());
+            }
+            return Collections.unmodifiableMap(accessors);
+        }
+    };
+
+    public static FieldSelection parse(Class<? extends Record> type, String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> known = ACCESSORS.get(type).keySet();
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!known.contains(trimmed)) {
+                throw new CustomGlobalException(ErrorCode.INVALID_FIELDS, trimmed);
+            }
+            names.add(trimmed);
+        }
+        return new FieldSelection(Set.copyOf(names));
+    }
+
+    public boolean includes(String name) {
+        return names == null || names.contains(name);
+    }
+
+    /** The views unchanged when all fields were requested, otherwise one field map per view */
+    public List<?> apply(List<? extends Record> views) {
+        return names == null ? views : views.stream().map(this::apply).toList();
+    }
+
+    public Map<String, Object> apply(Record view) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        ACCESSORS.get(view.getClass()).forEach((name, accessor) -> {
+            if (includes(name)) {
+                selected.put(name, read(accessor, view));
+            }
+        });
+        return selected;
+    }
+
+    private static Object read(Method accessor, Record view) {
+        try {
+            return accessor.invoke(view);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Cannot read " + accessor.getName() + " of " + view.getClass().getSimpleName(), ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return names == null ? "all" : String.join(",", names);
+    }
+}
@@ -0,0 +1,56 @@
+package com.assignment.chatstorage.dto;
+
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position in a session's message stream, ordered by (createdAt, id).
+ */
+public record MessageCursor(LocalDateTime createdAt, UUID id) {
+
+    /** Message order as Postgres sorts it: createdAt, then id compared as unsigned bytes */
+    public static final Comparator<MessageView> ORDER = Comparator.comparing(MessageView::createdAt)
+            .thenComparing(MessageView::id, MessageCursor::compareIds);
+
+    /** The same order over positions */
+    public static final Comparator<MessageCursor> POSITION_ORDER = Comparator.comparing(MessageCursor::createdAt)
+            .thenComparing(MessageCursor::id, MessageCursor::compareIds);
+
+    private static final char SEPARATOR = '|';
+
+    public static MessageCursor of(MessageView view) {
+        return new MessageCursor(view.createdAt(), view.id());
+    }
+
+    /** Negative if this position sorts before the message, positive if after. */
+    public int compareTo(MessageView view) {
+        int byTime = createdAt.compareTo(view.createdAt());
+        return byTime != 0 ? byTime : compareIds(id, view.id());
+    }
+
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+        } catch (RuntimeException ex) {
+            throw new CustomGlobalException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    private static int compareIds(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
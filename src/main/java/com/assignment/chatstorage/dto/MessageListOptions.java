@@ -0,0 +1,30 @@
+package com.assignment.chatstorage.dto;
+
+/**
+ * What a message listing returns, and therefore what it has to select. The field selection prunes what is expensive to
+ * read: the content column, which may be TOASTed and compressed, and the contexts in the context store. The other
+ * columns are part of the row Postgres reads anyway; they are selected and only left out when serializing.
+ */
+public record MessageListOptions(ContextMode context, MessageViewMode view, FieldSelection fields) {
+
+    public static final MessageListOptions DEFAULT = new MessageListOptions(ContextMode.FULL, MessageViewMode.FULL, FieldSelection.ALL);
+
+    /** Whether the full content column is read at all */
+    public boolean selectContent() {
+        return view == MessageViewMode.FULL && fields.includes("content");
+    }
+
+    public boolean preview() {
+        return view == MessageViewMode.PREVIEW;
+    }
+
+    /** Whether the preview columns, which read the content column too, are selected */
+    public boolean selectPreview() {
+        return preview() && (fields.includes("content") || fields.includes("contentLength") || fields.includes("truncated"));
+    }
+
+    /** Whether context payloads are loaded from the context store */
+    public boolean resolveContexts() {
+        return context == ContextMode.FULL && view == MessageViewMode.FULL && fields.includes("context");
+    }
+}
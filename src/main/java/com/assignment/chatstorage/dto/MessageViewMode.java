@@ -0,0 +1,10 @@
+package com.assignment.chatstorage.dto;
+
+/**
+ * How much of each message a listing returns: the whole message, or a preview of its content (see
+ * {@link Dtos.MessageView}) for scroll views and sidebars, with the full body fetched per message on demand.
+ */
+public enum MessageViewMode {
+    FULL,
+    PREVIEW
+}
@@ -0,0 +1,33 @@
+package com.assignment.chatstorage.dto;
+
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position in a ranked search result, ordered by (rank desc, messageId desc).
+ */
+public record SearchCursor(float rank, UUID messageId) {
+
+    /** Sorts before every real hit, so the first page can run the same query as later ones */
+    public static final SearchCursor FIRST = new SearchCursor(Float.MAX_VALUE, new UUID(-1L, -1L));
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            return new SearchCursor(Float.parseFloat(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+        } catch (RuntimeException ex) {
+            throw new CustomGlobalException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.assignment.chatstorage.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.util.Locale;
+
+/**
+ * Change applied by {@code POST /api/v1/session/bulk} to every selected session, as one set-based UPDATE. Matched
+ * case-insensitively, like enum query parameters.
+ */
+public enum SessionBulkOperation {
+    DELETE,
+    FAVORITE,
+    UNFAVORITE;
+
+    @JsonCreator
+    public static SessionBulkOperation of(String value) {
+        return valueOf(value.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,12 @@
+package com.assignment.chatstorage.dto;
+
+/**
+ * A view together with the optimistic-lock version of the row it was read from. The version is sent as the ETag and
+ * comes back in If-Match, so the view itself keeps its shape.
+ */
+public record Versioned<T>(
+        T value,
+        long version
+) {
+
+}
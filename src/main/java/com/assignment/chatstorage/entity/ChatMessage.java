@@ -1,5 +1,6 @@
 package com.assignment.chatstorage.entity;
 
+import com.assignment.chatstorage.util.UuidV7;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -8,6 +9,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import java.util.UUID;
 import lombok.Getter;
 import lombok.Setter;
@@ -29,6 +31,12 @@ public class ChatMessage extends AuditEntity {
     @Column(nullable = false, columnDefinition = "text")
     private String content;
 
+    /** SHA-256 of the context payload in tbl_chat_contexts (see ContextStore) */
+    @Column(length = 64)
+    private String contextHash;
+
+    /** The payload itself, set on write and when a read resolves it; not a column */
+    @Transient
     private String context;
 
     @Column(updatable = false)
@@ -37,7 +45,7 @@ public class ChatMessage extends AuditEntity {
     @PrePersist
     public void prePersist() {
         if (id == null) {
-            id = UUID.randomUUID();
+            id = UuidV7.next();
         }
     }
 }
@@ -1,5 +1,6 @@
 package com.assignment.chatstorage.entity;
 
+import com.assignment.chatstorage.util.UuidV7;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -8,6 +9,8 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -33,6 +36,29 @@ public class ChatSession extends AuditEntity {
     @Column(nullable = false)
     private Boolean favorite = false;
 
+    /** Maintained by SessionArchiver only, so an entity update can never reset it */
+    @Column(insertable = false, updatable = false)
+    private Boolean archived;
+
+    /** Bumped with every change to title, favorite or deleted; sent as the session's ETag */
+    @Version
+    private Long version;
+
+    /** Set by the soft-delete statements; SessionPurgeJob removes the session a grace period later */
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    /** Activity counters, changed only by ChatSessionRepository.recordActivity so an entity update never overwrites them */
+    @Column(nullable = false, updatable = false)
+    private Long messageCount = 0L;
+
+    @Column(updatable = false)
+    private LocalDateTime lastMessageAt;
+
+    /** UTF-8 size of all message contents */
+    @Column(nullable = false, updatable = false)
+    private Long contentBytes = 0L;
+
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("createdAt ASC")
     private List<ChatMessage> messages = new ArrayList<>();
@@ -40,7 +66,7 @@ public class ChatSession extends AuditEntity {
     @PrePersist
     public void prePersist() {
         if (id == null) {
-            id = UUID.randomUUID();
+            id = UuidV7.next();
         }
     }
 }
\ No newline at end of file
@@ -10,8 +10,21 @@ import lombok.ToString;
 public enum ErrorCode {
 
     SESSION_NOT_FOUND("ERR_CS_SES_01", "Session not found"),
+    SESSION_MODIFIED("ERR_CS_SES_02", "Session was modified since it was read; reload it and retry"),
+    MESSAGE_NOT_FOUND("ERR_CS_MSG_01", "Message not found"),
+    CONTEXT_NOT_FOUND("ERR_CS_CTX_01", "Context not found"),
+    // Paging
+    INVALID_CURSOR("ERR_CS_PAGE_01", "Invalid or malformed cursor"),
+    INVALID_FIELDS("ERR_CS_PAGE_02", "Unknown field requested: %s"),
+    // Search
+    INVALID_SEARCH_QUERY("ERR_CS_SRCH_01", "Search query must not be blank or longer than 256 characters"),
+    // Ingest
+    INGEST_QUEUE_FULL("ERR_CS_ING_01", "Message ingest is saturated, retry later"),
+    INGEST_TIMEOUT("ERR_CS_ING_02", "Timed out waiting for the message to be committed"),
     // Rate limiting
-    RATE_LIMIT_EXCEEDED("ERR_CS_RATE_01", "Too many requests");
+    RATE_LIMIT_EXCEEDED("ERR_CS_RATE_01", "Too many requests"),
+    // Load shedding
+    OVERLOADED("ERR_CS_LOAD_01", "Server is overloaded, retry later");
 
     private final String code;
     private final String description;
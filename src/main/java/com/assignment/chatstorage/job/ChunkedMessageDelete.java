@@ -0,0 +1,93 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.dto.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import org.springframework.lang.Nullable;
+
+/**
+ * The chunk loop shared by the jobs that delete messages. Each chunk is one {@code DELETE ... RETURNING} supplied by the
+ * caller, which must delete in {@code (created_at, id)} order after the given cursor. The loop seeks past the last
+ * deleted key, so a chunk never walks the dead index entries left by the ones before it, and pauses between chunks so
+ * no burst of row locks or WAL builds up. Chunks and their durations are published as {@code <prefix>.chunks} and
+ * {@code <prefix>.chunk}, deleted rows as {@code <prefix>.messages}.
+ */
+class ChunkedMessageDelete {
+
+    /** Messages are created after their session; the margin covers clock skew between application nodes */
+    private static final Duration CLOCK_SKEW = Duration.ofHours(1);
+
+    /** Lower bound for sessions without created_at: before any message can have been written */
+    private static final LocalDateTime MIN_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final String jobName;
+    private final Counter messages;
+    private final Counter chunks;
+    private final Timer chunkTimer;
+
+    ChunkedMessageDelete(String jobName, String prefix, MeterRegistry registry) {
+        this.jobName = jobName;
+        this.messages = Counter.builder(prefix + ".messages")
+                .description("Messages removed by the " + jobName)
+                .register(registry);
+        this.chunks = Counter.builder(prefix + ".chunks")
+                .description("Message DELETE statements run by the " + jobName)
+                .register(registry);
+        this.chunkTimer = Timer.builder(prefix + ".chunk")
+                .description("Duration of one message DELETE chunk of the " + jobName)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    /** The earliest created_at a message of a session created at the given time can have */
+    static LocalDateTime earliestMessageOf(@Nullable LocalDateTime sessionCreatedAt) {
+        return sessionCreatedAt == null ? MIN_CREATED_AT : sessionCreatedAt.minus(CLOCK_SKEW);
+    }
+
+    /** A cursor before every message created at or after the given time */
+    static MessageCursor from(LocalDateTime createdAt) {
+        return new MessageCursor(createdAt, MIN_ID);
+    }
+
+    /**
+     * Runs chunks from {@code start} until one deletes fewer than {@code chunkSize} rows; returns the rows deleted.
+     *
+     * @param chunk deletes up to {@code chunkSize} messages after the cursor and returns what it deleted
+     * @param key   the key of a deleted row
+     */
+    <T> long run(MessageCursor start, int chunkSize, Duration pause, Function<MessageCursor, List<T>> chunk,
+            Function<T, MessageCursor> key) {
+        MessageCursor after = start;
+        long deleted = 0;
+        while (true) {
+            MessageCursor seek = after;
+            List<T> rows = chunkTimer.record(() -> chunk.apply(seek));
+            chunks.increment();
+            messages.increment(rows.size());
+            deleted += rows.size();
+            if (rows.size() < chunkSize) {
+                return deleted;
+            }
+            // RETURNING has no order; resume after the highest key of the chunk
+            after = rows.stream().map(key).max(MessageCursor.POSITION_ORDER).orElseThrow();
+            pause(pause);
+        }
+    }
+
+    private void pause(Duration pause) {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(jobName + " interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.assignment.chatstorage.job;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lets a job run at most once at a time on this instance, whether started by its schedule, by hand in the background
+ * (the actuator endpoints) or directly. A start while a run is in progress is skipped, not queued.
+ */
+@Slf4j
+class ExclusiveRun {
+
+    private final String jobName;
+    private final ExecutorService background;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    ExclusiveRun(String jobName) {
+        this.jobName = jobName;
+        this.background = Executors.newSingleThreadExecutor(r -> new Thread(r, jobName.replace(' ', '-')));
+    }
+
+    /** Runs the job on the calling thread; empty when a run was already in progress */
+    <T> Optional<T> run(Supplier<T> job) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("{} already running, skipped", jobName);
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(job.get());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /** Starts the job in the background unless a run is in progress; returns whether it was started */
+    boolean runAsync(Runnable job) {
+        if (running.get()) {
+            return false;
+        }
+        background.execute(job);
+        return true;
+    }
+
+    boolean isRunning() {
+        return running.get();
+    }
+
+    void shutdown() {
+        background.shutdownNow();
+    }
+}
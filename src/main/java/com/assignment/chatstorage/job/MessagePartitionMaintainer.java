@@ -0,0 +1,159 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.config.PartitionProperties;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the monthly range partitions of {@code tbl_chat_messages} (see V3__partition_messages.sql) ahead of time and
+ * retires old ones. Every step is idempotent, so concurrent runs on several instances only cost a logged error.
+ * Retiring a partition takes its messages out of their sessions' counters in the same transaction as the detach.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "partition", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MessagePartitionMaintainer {
+
+    static final String PARENT = "tbl_chat_messages";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'_y'yyyy'm'MM");
+    private static final Pattern MONTHLY = Pattern.compile(PARENT + "_y(\\d{4})m(\\d{2})");
+
+    private static final String RELKIND_SQL = "select relkind from pg_class where oid = to_regclass(?)";
+    private static final String PARTITIONS_SQL = """
+            select c.relname
+            from pg_inherits i
+            join pg_class c on c.oid = i.inhrelid
+            where i.inhparent = to_regclass(?)
+            """;
+
+    /*
+     * Takes the messages of a partition about to be detached out of their sessions' counters. Sessions are locked in
+     * id order, as MessageWriter does. last_message_at only moves when it lies in the retired range; it then falls
+     * back to the newest message left, or null. Archived sessions keep theirs, as it refers to the archive.
+     */
+    private static final String RETIRE_COUNTERS_SQL = """
+            with retired as (
+                select session_id, count(*) as messages, coalesce(sum(octet_length(content)), 0) as bytes
+                from %s
+                group by session_id
+            ),
+            locked as (
+                select s.id from tbl_chat_sessions s join retired on retired.session_id = s.id
+                order by s.id
+                for update of s
+            )
+            update tbl_chat_sessions s
+            set message_count = greatest(s.message_count - retired.messages, 0),
+                content_bytes = greatest(s.content_bytes - retired.bytes, 0),
+                last_message_at = case
+                    when s.archived or s.last_message_at >= ? then s.last_message_at
+                    else (select max(m.created_at) from tbl_chat_messages m where m.session_id = s.id and m.created_at >= ?)
+                end
+            from retired join locked on locked.id = retired.session_id
+            where s.id = retired.session_id
+            returning s.id, s.user_id
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final PartitionProperties props;
+    private final SessionMetadataCache sessionCache;
+    private final SessionListCache sessionListCache;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${partition.cron:0 15 3 * * *}")
+    public void maintain() {
+        maintain(YearMonth.now());
+    }
+
+    void maintain(YearMonth current) {
+        String relkind = jdbc.queryForObject(RELKIND_SQL, String.class, PARENT);
+        if (!"p".equals(relkind)) {
+            log.warn("{} is not a partitioned table, skipping partition maintenance", PARENT);
+            return;
+        }
+        List<String> existing = jdbc.queryForList(PARTITIONS_SQL, String.class, PARENT);
+        for (int i = 0; i <= props.getMonthsAhead(); i++) {
+            create(current.plusMonths(i), existing);
+        }
+        if (props.getRetentionMonths() > 0) {
+            retireBefore(current.minusMonths(props.getRetentionMonths()), existing);
+        }
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARENT + month.format(SUFFIX);
+    }
+
+    private void create(YearMonth month, List<String> existing) {
+        String name = partitionName(month);
+        if (existing.contains(name)) {
+            return;
+        }
+        try {
+            jdbc.execute("create table if not exists " + name + " partition of " + PARENT
+                    + " for values from ('" + month.atDay(1) + "') to ('" + month.plusMonths(1).atDay(1) + "')");
+            log.info("Created message partition {}", name);
+        } catch (DataAccessException e) {
+            // Typically rows for that month already sit in the default partition and have to be moved by hand
+            log.error("Could not create message partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void retireBefore(YearMonth cutoff, List<String> existing) {
+        for (String name : existing) {
+            Matcher m = MONTHLY.matcher(name);
+            if (!m.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+            if (!month.isBefore(cutoff)) {
+                continue;
+            }
+            try {
+                tx.executeWithoutResult(status -> detach(name, month));
+                if (props.isDropDetached()) {
+                    jdbc.execute("drop table " + name);
+                    log.info("Dropped message partition {}", name);
+                } else {
+                    log.info("Detached message partition {}", name);
+                }
+            } catch (DataAccessException e) {
+                log.error("Could not retire message partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /** Updates the counters of the sessions with messages in the partition, then detaches it; one transaction */
+    private void detach(String name, YearMonth month) {
+        Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        List<SessionRef> sessions = jdbc.query(RETIRE_COUNTERS_SQL.formatted(name),
+                (rs, i) -> new SessionRef(rs.getObject("id", UUID.class), rs.getString("user_id")), end, end);
+        jdbc.execute("alter table " + PARENT + " detach partition " + name);
+        // Evicted after commit
+        sessions.forEach(session -> sessionCache.invalidate(session.id()));
+        sessions.stream().map(SessionRef::userId).distinct().forEach(sessionListCache::invalidate);
+        log.debug("Partition {} held messages of {} sessions", name, sessions.size());
+    }
+
+    private record SessionRef(UUID id, String userId) {
+    }
+}
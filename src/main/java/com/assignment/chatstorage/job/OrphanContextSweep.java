@@ -0,0 +1,90 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.service.impl.ContextStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Deletes context payloads ({@code tbl_chat_contexts}) no message references any more, shared by the jobs that delete
+ * messages. Archives inline their contexts, so only {@code tbl_chat_messages} counts. The sweep walks the table in hash
+ * order, {@code chunkSize} hashes per autocommitted statement with a pause after each, and skips payloads written within
+ * {@link ContextStore#ORPHAN_GRACE}. Deleted payloads are published as {@code <prefix>.contexts}.
+ */
+class OrphanContextSweep {
+
+    private static final String ORPHANED = """
+            c.created_at < ? and not exists (select 1 from tbl_chat_messages m where m.context_hash = c.hash)
+            """;
+
+    private static final String COUNT_SQL = "select count(*) from tbl_chat_contexts c where " + ORPHANED;
+
+    /* One chunk: the last hash scanned is the next cursor, whether or not anything in the chunk was orphaned */
+    private static final String DELETE_CHUNK_SQL = """
+            with scanned as (
+                select hash from tbl_chat_contexts where hash > ? order by hash limit ?
+            ), orphans as (
+                delete from tbl_chat_contexts c using scanned
+                where c.hash = scanned.hash and %s
+                returning c.hash
+            )
+            select (select max(hash) from scanned) as last_hash, (select count(*) from scanned) as scanned,
+                   (select count(*) from orphans) as deleted
+            """.formatted(ORPHANED);
+
+    private final JdbcTemplate jdbc;
+    private final String jobName;
+    private final Counter contexts;
+
+    OrphanContextSweep(JdbcTemplate jdbc, String jobName, String prefix, MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.jobName = jobName;
+        this.contexts = Counter.builder(prefix + ".contexts")
+                .description("Unreferenced context payloads removed by the " + jobName)
+                .register(registry);
+    }
+
+    /** Payloads a sweep started now would delete */
+    long count() {
+        Long count = jdbc.queryForObject(COUNT_SQL, Long.class, writtenBefore());
+        return count == null ? 0 : count;
+    }
+
+    /** Sweeps the whole table once; returns the payloads deleted */
+    long run(int chunkSize, Duration pause) {
+        Timestamp bound = writtenBefore();
+        String after = "";
+        long deleted = 0;
+        while (true) {
+            Chunk chunk = jdbc.queryForObject(DELETE_CHUNK_SQL,
+                    (rs, i) -> new Chunk(rs.getString("last_hash"), rs.getInt("scanned"), rs.getLong("deleted")),
+                    after, chunkSize, bound);
+            contexts.increment(chunk.deleted());
+            deleted += chunk.deleted();
+            if (chunk.scanned() < chunkSize) {
+                return deleted;
+            }
+            after = chunk.lastHash();
+            pause(pause);
+        }
+    }
+
+    private static Timestamp writtenBefore() {
+        return Timestamp.valueOf(LocalDateTime.now().minus(ContextStore.ORPHAN_GRACE));
+    }
+
+    private void pause(Duration pause) {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(jobName + " interrupted", e);
+        }
+    }
+
+    private record Chunk(String lastHash, int scanned, long deleted) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.job.RetentionJob.RetentionReport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/retention} reports the last run; {@code POST /actuator/retention} starts one in the background,
+ * a dry run with {@code {"dryRun": true}}.
+ */
+@Component
+@Endpoint(id = "retention")
+@RequiredArgsConstructor
+public class RetentionEndpoint {
+
+    private final RetentionJob job;
+
+    @ReadOperation
+    public RetentionStatus status() {
+        return new RetentionStatus(job.isRunning(), false, job.getLastReport());
+    }
+
+    @WriteOperation
+    public RetentionStatus run(@Nullable Boolean dryRun) {
+        boolean started = job.runAsync(Boolean.TRUE.equals(dryRun));
+        return new RetentionStatus(job.isRunning() || started, started, job.getLastReport());
+    }
+
+    public record RetentionStatus(boolean running, boolean started, RetentionReport lastReport) {
+    }
+}
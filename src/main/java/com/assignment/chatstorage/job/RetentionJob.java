@@ -0,0 +1,317 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.config.RetentionProperties;
+import com.assignment.chatstorage.config.RetentionProperties.Policy;
+import com.assignment.chatstorage.dto.MessageCursor;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Expires messages and sessions older than the TTL of the user's {@link Policy}. Each user is expired by exactly one
+ * worker of a {@code retention.parallelism} pool, so workers never touch the same rows. Per user the job walks
+ * {@code created_at} in windows of {@code retention.window}, jumping straight to the next window that holds messages,
+ * and deletes each window in key-ordered chunks of {@code retention.chunk-size}. Every chunk is its own transaction that
+ * also takes the deleted messages off the session counters. Archives holding messages past the TTL are then trimmed by
+ * {@link SessionArchiver#expireBefore}, one session per transaction. Sessions whose last activity is past the TTL go
+ * last, together with what is left of their archive. Context payloads left unreferenced are swept at the end
+ * ({@link OrphanContextSweep}). A dry run only counts. Progress is published as {@code chat.retention.*} metrics;
+ * {@link RetentionEndpoint} starts a run by hand.
+ */
+@Slf4j
+@Component
+public class RetentionJob {
+
+    private static final String USERS_SQL = "select distinct user_id from tbl_chat_sessions where created_at < ?";
+
+    private static final String FIRST_SESSION_SQL = "select min(created_at) from tbl_chat_sessions where user_id = ?";
+
+    private static final String USER_SESSIONS = "select id from tbl_chat_sessions where user_id = ?";
+
+    private static final String NEXT_MESSAGE_SQL = """
+            select min(created_at) from tbl_chat_messages
+            where session_id in (%s) and created_at >= ? and created_at < ?
+            """.formatted(USER_SESSIONS);
+
+    private static final String COUNT_MESSAGES_SQL = """
+            select count(*) from tbl_chat_messages
+            where session_id in (%s) and created_at < ?
+            """.formatted(USER_SESSIONS);
+
+    /*
+     * One chunk of a window (see ChunkedMessageDelete). The window bounds the sort to the user's messages of one range
+     * and lets Postgres skip the other partitions.
+     */
+    private static final String DELETE_CHUNK_SQL = """
+            with chunk as (
+                select id, created_at, session_id, coalesce(octet_length(content), 0) as bytes from tbl_chat_messages
+                where session_id in (%s) and created_at >= ? and created_at < ? and (created_at, id) > (?, ?)
+                order by created_at, id
+                limit ?
+            )
+            delete from tbl_chat_messages m using chunk
+            where m.id = chunk.id and m.created_at = chunk.created_at
+            returning m.created_at, m.id, m.session_id, chunk.bytes
+            """.formatted(USER_SESSIONS);
+
+    private static final String DECREMENT_SQL = """
+            update tbl_chat_sessions
+            set message_count = greatest(message_count - ?, 0), content_bytes = greatest(content_bytes - ?, 0)
+            where id = ?
+            """;
+
+    /* Archives that may hold messages before the cutoff; the column is null for archives not checked yet */
+    private static final String ARCHIVES_SQL = """
+            select a.session_id from tbl_chat_session_archives a
+            join tbl_chat_sessions s on s.id = a.session_id
+            where s.user_id = ? and (a.oldest_message_at is null or a.oldest_message_at < ?)
+            """;
+
+    private static final String EXPIRED_SESSIONS = """
+            select id from tbl_chat_sessions s
+            where user_id = ? and coalesce(last_message_at, created_at) < ?
+            """;
+
+    private static final String COUNT_SESSIONS_SQL = "select count(*) from (%s) expired".formatted(EXPIRED_SESSIONS);
+
+    /* Archive and session in one statement: the foreign key is checked once both deletes are done */
+    private static final String DELETE_SESSIONS_SQL = """
+            with expired as (
+                %s and not exists (select 1 from tbl_chat_messages m where m.session_id = s.id)
+                for update
+            ), archives as (
+                delete from tbl_chat_session_archives a using expired where a.session_id = expired.id
+            )
+            delete from tbl_chat_sessions s using expired
+            where s.id = expired.id
+            returning s.id
+            """.formatted(EXPIRED_SESSIONS);
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final RetentionProperties props;
+    private final SessionMetadataCache sessionCache;
+    private final SessionListCache sessionListCache;
+    private final SessionArchiver sessionArchiver;
+    private final MeterRegistry registry;
+    private final ExclusiveRun exclusive = new ExclusiveRun("retention");
+    private volatile RetentionReport lastReport;
+    private final Counter expiredSessions;
+    private final ChunkedMessageDelete chunkedDelete;
+    private final OrphanContextSweep contextSweep;
+
+    public RetentionJob(JdbcTemplate jdbc, TransactionTemplate tx, RetentionProperties props, SessionMetadataCache sessionCache,
+            SessionListCache sessionListCache, SessionArchiver sessionArchiver, MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.props = props;
+        this.sessionCache = sessionCache;
+        this.sessionListCache = sessionListCache;
+        this.sessionArchiver = sessionArchiver;
+        this.registry = registry;
+        this.expiredSessions = Counter.builder("chat.retention.sessions")
+                .description("Sessions removed past their retention TTL")
+                .register(registry);
+        this.chunkedDelete = new ChunkedMessageDelete("retention job", "chat.retention", registry);
+        this.contextSweep = new OrphanContextSweep(jdbc, "retention job", "chat.retention", registry);
+    }
+
+    @Scheduled(cron = "${retention.cron:0 0 2 * * *}")
+    public void scheduledRun() {
+        if (props.isEnabled()) {
+            run(props.isDryRun());
+        }
+    }
+
+    /** Starts a run in the background unless one is already going; returns whether it was started */
+    public boolean runAsync(boolean dryRun) {
+        return exclusive.runAsync(() -> run(dryRun));
+    }
+
+    /** Expires everything past its policy's TTL, or only counts it; empty when another run was already in progress */
+    public Optional<RetentionReport> run(boolean dryRun) {
+        return exclusive.run(() -> {
+            RetentionReport report = expire(dryRun);
+            lastReport = report;
+            return report;
+        });
+    }
+
+    public boolean isRunning() {
+        return exclusive.isRunning();
+    }
+
+    public RetentionReport getLastReport() {
+        return lastReport;
+    }
+
+    /** TTL of the policy with the longest {@code userIdPrefix} the user id starts with; empty when none matches */
+    static Optional<Duration> ttlFor(List<Policy> policies, String userId) {
+        return policies.stream()
+                .filter(p -> p.getTtl() != null && userId.startsWith(p.getUserIdPrefix()))
+                .max(Comparator.comparingInt(p -> p.getUserIdPrefix().length()))
+                .map(Policy::getTtl);
+    }
+
+    private RetentionReport expire(boolean dryRun) {
+        List<Policy> policies = List.copyOf(props.getPolicies());
+        Instant startedAt = Instant.now();
+        LocalDateTime now = LocalDateTime.now();
+        Optional<Duration> shortestTtl = policies.stream().map(Policy::getTtl).filter(Objects::nonNull).min(Comparator.naturalOrder());
+        if (shortestTtl.isEmpty()) {
+            return new RetentionReport(dryRun, startedAt, Duration.ZERO, 0, 0, 0, 0, 0);
+        }
+        List<String> users = jdbc.queryForList(USERS_SQL, String.class, Timestamp.valueOf(now.minus(shortestTtl.get())));
+        List<Future<UserResult>> results = new ArrayList<>();
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, props.getParallelism()),
+                r -> new Thread(r, "retention-" + workerIds.incrementAndGet()));
+        try {
+            for (String userId : users) {
+                ttlFor(policies, userId).ifPresent(ttl -> results.add(workers.submit(() -> expireUser(userId, now.minus(ttl), dryRun))));
+            }
+            long messages = 0;
+            long sessions = 0;
+            int failed = 0;
+            for (Future<UserResult> result : results) {
+                try {
+                    UserResult user = result.get();
+                    messages += user.messages();
+                    sessions += user.sessions();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("Retention failed for a user: {}", e.getCause().getMessage());
+                }
+            }
+            long contexts = dryRun ? contextSweep.count() : contextSweep.run(props.getChunkSize(), props.getChunkPause());
+            Duration took = Duration.between(startedAt, Instant.now());
+            Timer.builder("chat.retention.run")
+                    .description("Duration of a whole retention run")
+                    .tag("dryRun", String.valueOf(dryRun))
+                    .register(registry)
+                    .record(took);
+            log.info("Retention {}: {} messages and {} sessions of {} users{}, {} contexts in {}", dryRun ? "dry run" : "run", messages,
+                    sessions, results.size(), failed > 0 ? " (" + failed + " failed)" : "", contexts, took);
+            return new RetentionReport(dryRun, startedAt, took, results.size(), messages, sessions, contexts, failed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Retention run interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private UserResult expireUser(String userId, LocalDateTime cutoff, boolean dryRun) {
+        Timestamp bound = Timestamp.valueOf(cutoff);
+        if (dryRun) {
+            return new UserResult(count(COUNT_MESSAGES_SQL, userId, bound) + expireArchives(userId, cutoff, true),
+                    count(COUNT_SESSIONS_SQL, userId, bound));
+        }
+        long messages = 0;
+        LocalDateTime firstSession = jdbc.queryForObject(FIRST_SESSION_SQL, LocalDateTime.class, userId);
+        LocalDateTime from = ChunkedMessageDelete.earliestMessageOf(firstSession);
+        while (from.isBefore(cutoff)) {
+            LocalDateTime next = jdbc.queryForObject(NEXT_MESSAGE_SQL, LocalDateTime.class, userId, Timestamp.valueOf(from), bound);
+            if (next == null) {
+                break;
+            }
+            LocalDateTime windowEnd = next.plus(props.getWindow());
+            if (windowEnd.isAfter(cutoff)) {
+                windowEnd = cutoff;
+            }
+            messages += expireWindow(userId, next, windowEnd);
+            from = windowEnd;
+        }
+        messages += expireArchives(userId, cutoff, false);
+        List<UUID> sessions = jdbc.queryForList(DELETE_SESSIONS_SQL, UUID.class, userId, bound);
+        sessions.forEach(sessionCache::invalidate);
+        expiredSessions.increment(sessions.size());
+        if (messages > 0 || !sessions.isEmpty()) {
+            sessionListCache.invalidate(userId);
+            log.debug("Expired {} messages and {} sessions of user={} before {}", messages, sessions.size(), userId, cutoff);
+        }
+        return new UserResult(messages, sessions.size());
+    }
+
+    private long expireArchives(String userId, LocalDateTime cutoff, boolean dryRun) {
+        long expired = 0;
+        for (UUID sessionId : jdbc.queryForList(ARCHIVES_SQL, UUID.class, userId, Timestamp.valueOf(cutoff))) {
+            expired += sessionArchiver.expireBefore(sessionId, cutoff, dryRun);
+        }
+        return expired;
+    }
+
+    /** Each chunk is one transaction together with its counter update */
+    private long expireWindow(String userId, LocalDateTime from, LocalDateTime to) {
+        return chunkedDelete.run(ChunkedMessageDelete.from(from), props.getChunkSize(), props.getChunkPause(),
+                after -> tx.execute(status -> deleteChunk(userId, from, to, after)), DeletedMessage::key);
+    }
+
+    private List<DeletedMessage> deleteChunk(String userId, LocalDateTime from, LocalDateTime to, MessageCursor after) {
+        Timestamp afterAt = Timestamp.valueOf(after.createdAt());
+        List<DeletedMessage> rows = jdbc.query(DELETE_CHUNK_SQL,
+                (rs, i) -> new DeletedMessage(
+                        new MessageCursor(rs.getObject("created_at", LocalDateTime.class), rs.getObject("id", UUID.class)),
+                        rs.getObject("session_id", UUID.class), rs.getLong("bytes")),
+                userId, Timestamp.valueOf(from), Timestamp.valueOf(to), afterAt, after.id(), props.getChunkSize());
+        // Id order, like MessageWriter, so concurrent writers lock sessions in the same order
+        Map<UUID, long[]> perSession = new TreeMap<>();
+        for (DeletedMessage row : rows) {
+            long[] totals = perSession.computeIfAbsent(row.sessionId(), id -> new long[2]);
+            totals[0]++;
+            totals[1] += row.bytes();
+        }
+        perSession.forEach((sessionId, totals) -> jdbc.update(DECREMENT_SQL, totals[0], totals[1], sessionId));
+        return rows;
+    }
+
+    private long count(String sql, String userId, Timestamp bound) {
+        Long count = jdbc.queryForObject(sql, Long.class, userId, bound);
+        return count == null ? 0 : count;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        exclusive.shutdown();
+    }
+
+    /**
+     * Totals of one run; {@code messages} counts hot and archived messages alike. {@code contexts} counts unreferenced
+     * context payloads; a dry run deletes no messages, so it only sees those unreferenced already.
+     */
+    public record RetentionReport(boolean dryRun, Instant startedAt, Duration took, int users, long messages, long sessions,
+            long contexts, int failedUsers) {
+    }
+
+    private record UserResult(long messages, long sessions) {
+    }
+
+    private record DeletedMessage(MessageCursor key, UUID sessionId, long bytes) {
+    }
+}
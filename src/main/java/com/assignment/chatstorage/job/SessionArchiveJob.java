@@ -0,0 +1,68 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.config.ArchiveProperties;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves sessions without a message for {@code archive.inactive-after} to the archive tier, one transaction per
+ * session. Storage saved and archive read latency are published by {@link SessionArchiver} as
+ * {@code chat.archive.*} metrics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "archive", name = "enabled", havingValue = "true")
+public class SessionArchiveJob {
+
+    // Sessions with messages, none of them newer than the cutoff; the second check only touches recent partitions
+    private static final String CANDIDATES_SQL = """
+            select s.id from tbl_chat_sessions s
+            where s.archived = false and s.is_deleted = false and s.created_at < ?
+              and exists (select 1 from tbl_chat_messages m where m.session_id = s.id)
+              and not exists (select 1 from tbl_chat_messages m where m.session_id = s.id and m.created_at >= ?)
+            limit ?
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final SessionArchiver archiver;
+    private final ArchiveProperties props;
+
+    @Scheduled(cron = "${archive.cron:0 30 3 * * *}")
+    public void run() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(props.getInactiveAfter());
+        Timestamp bound = Timestamp.valueOf(cutoff);
+        int sessions = 0;
+        long messages = 0;
+        while (true) {
+            List<UUID> candidates = jdbc.queryForList(CANDIDATES_SQL, UUID.class, bound, bound, props.getBatchSize());
+            int archivedInRound = 0;
+            for (UUID sessionId : candidates) {
+                try {
+                    int count = archiver.archive(sessionId, cutoff);
+                    if (count > 0) {
+                        archivedInRound++;
+                        messages += count;
+                    }
+                } catch (DataAccessException e) {
+                    log.error("Could not archive session id={}: {}", sessionId, e.getMessage());
+                }
+            }
+            sessions += archivedInRound;
+            if (candidates.size() < props.getBatchSize() || archivedInRound == 0) {
+                break;
+            }
+        }
+        log.info("Archived {} sessions ({} messages) inactive since {}", sessions, messages, cutoff);
+    }
+}
@@ -0,0 +1,34 @@
+package com.assignment.chatstorage.job;
+
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/purge} reports the purge state; {@code POST /actuator/purge} starts a run in the background.
+ * Like the API, it requires the API key, as do all actuator endpoints except health.
+ */
+@Component
+@Endpoint(id = "purge")
+@RequiredArgsConstructor
+public class SessionPurgeEndpoint {
+
+    private final SessionPurgeJob job;
+
+    @ReadOperation
+    public PurgeStatus status() {
+        return new PurgeStatus(job.isRunning(), false, job.getPending(), job.getLastRunAt());
+    }
+
+    @WriteOperation
+    public PurgeStatus run() {
+        boolean started = job.runAsync();
+        return new PurgeStatus(job.isRunning() || started, started, job.getPending(), job.getLastRunAt());
+    }
+
+    public record PurgeStatus(boolean running, boolean started, long pending, Instant lastRunAt) {
+    }
+}
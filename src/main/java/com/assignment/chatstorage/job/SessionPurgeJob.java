@@ -0,0 +1,186 @@
+package com.assignment.chatstorage.job;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.config.PurgeProperties;
+import com.assignment.chatstorage.dto.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hard-deletes sessions that were soft-deleted more than {@code purge.grace-period} ago, together with their messages
+ * and archive. Messages go in key-ordered chunks of {@code purge.chunk-size}, each its own autocommitted statement with
+ * {@code purge.chunk-pause} after it, so no transaction holds many row locks or produces a WAL burst. A run that deleted
+ * messages ends with {@link OrphanContextSweep}, in chunks of the same size, for the context payloads they left behind.
+ * Progress is published as {@code chat.purge.*} metrics; {@link SessionPurgeEndpoint} starts a run by hand.
+ */
+@Slf4j
+@Component
+public class SessionPurgeJob {
+
+    private static final String CANDIDATES_SQL = """
+            select id, user_id, created_at from tbl_chat_sessions
+            where is_deleted = true and deleted_at < ?
+            order by deleted_at, id
+            limit ?
+            """;
+
+    private static final String PENDING_SQL = "select count(*) from tbl_chat_sessions where is_deleted = true and deleted_at < ?";
+
+    /* One chunk of a session (see ChunkedMessageDelete); the plain created_at bound lets Postgres skip partitions behind the cursor */
+    private static final String DELETE_CHUNK_SQL = """
+            with chunk as (
+                select id, created_at from tbl_chat_messages
+                where session_id = ? and created_at >= ? and (created_at, id) > (?, ?)
+                order by created_at, id
+                limit ?
+            )
+            delete from tbl_chat_messages m using chunk
+            where m.id = chunk.id and m.created_at = chunk.created_at
+            returning m.created_at, m.id
+            """;
+
+    private static final String DELETE_ARCHIVE_SQL = "delete from tbl_chat_session_archives where session_id = ?";
+
+    private static final String DELETE_SESSION_SQL = "delete from tbl_chat_sessions where id = ? and is_deleted = true";
+
+    private final JdbcTemplate jdbc;
+    private final PurgeProperties props;
+    private final SessionMetadataCache sessionCache;
+    private final SessionListCache sessionListCache;
+    private final ExclusiveRun exclusive = new ExclusiveRun("session purge");
+    private final AtomicLong pending = new AtomicLong();
+    private volatile Instant lastRunAt;
+    private final Counter purgedSessions;
+    private final ChunkedMessageDelete chunkedDelete;
+    private final OrphanContextSweep contextSweep;
+
+    public SessionPurgeJob(JdbcTemplate jdbc, PurgeProperties props, SessionMetadataCache sessionCache,
+            SessionListCache sessionListCache, MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.props = props;
+        this.sessionCache = sessionCache;
+        this.sessionListCache = sessionListCache;
+        this.purgedSessions = Counter.builder("chat.purge.sessions")
+                .description("Soft-deleted sessions removed for good")
+                .register(registry);
+        this.chunkedDelete = new ChunkedMessageDelete("session purge", "chat.purge", registry);
+        this.contextSweep = new OrphanContextSweep(jdbc, "session purge", "chat.purge", registry);
+        Gauge.builder("chat.purge.pending", pending, AtomicLong::get)
+                .description("Sessions past their grace period still waiting to be purged")
+                .register(registry);
+    }
+
+    @Scheduled(cron = "${purge.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        if (props.isEnabled()) {
+            run();
+        }
+    }
+
+    /** Starts a run in the background unless one is already going; returns whether it was started */
+    public boolean runAsync() {
+        return exclusive.runAsync(this::run);
+    }
+
+    /**
+     * Purges every session past its grace period. Returns the number of sessions removed, or -1 when another run was
+     * already in progress.
+     */
+    public int run() {
+        return exclusive.run(() -> {
+            try {
+                return purge();
+            } finally {
+                lastRunAt = Instant.now();
+            }
+        }).orElse(-1);
+    }
+
+    public boolean isRunning() {
+        return exclusive.isRunning();
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    public Instant getLastRunAt() {
+        return lastRunAt;
+    }
+
+    private int purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(props.getGracePeriod());
+        Timestamp bound = Timestamp.valueOf(cutoff);
+        pending.set(countPending(bound));
+        int sessions = 0;
+        long messages = 0;
+        while (true) {
+            List<Candidate> candidates = jdbc.query(CANDIDATES_SQL,
+                    (rs, i) -> new Candidate(rs.getObject("id", UUID.class), rs.getString("user_id"),
+                            rs.getObject("created_at", LocalDateTime.class)),
+                    bound, props.getBatchSize());
+            int purgedInRound = 0;
+            for (Candidate candidate : candidates) {
+                try {
+                    messages += deleteMessages(candidate);
+                    jdbc.update(DELETE_ARCHIVE_SQL, candidate.id());
+                    if (jdbc.update(DELETE_SESSION_SQL, candidate.id()) > 0) {
+                        sessionCache.invalidate(candidate.id());
+                        sessionListCache.invalidate(candidate.userId());
+                        purgedInRound++;
+                        purgedSessions.increment();
+                        pending.updateAndGet(n -> Math.max(0, n - 1));
+                    }
+                } catch (DataAccessException e) {
+                    log.error("Could not purge session id={}: {}", candidate.id(), e.getMessage());
+                }
+            }
+            sessions += purgedInRound;
+            if (candidates.size() < props.getBatchSize() || purgedInRound == 0) {
+                break;
+            }
+        }
+        pending.set(countPending(bound));
+        long contexts = messages > 0 ? contextSweep.run(props.getChunkSize(), props.getChunkPause()) : 0;
+        log.info("Purged {} sessions ({} messages, {} contexts) deleted before {}", sessions, messages, contexts, cutoff);
+        return sessions;
+    }
+
+    private long deleteMessages(Candidate session) {
+        MessageCursor start = ChunkedMessageDelete.from(ChunkedMessageDelete.earliestMessageOf(session.createdAt()));
+        return chunkedDelete.run(start, props.getChunkSize(), props.getChunkPause(), after -> {
+            Timestamp from = Timestamp.valueOf(after.createdAt());
+            return jdbc.query(DELETE_CHUNK_SQL,
+                    (rs, i) -> new MessageCursor(rs.getObject("created_at", LocalDateTime.class), rs.getObject("id", UUID.class)),
+                    session.id(), from, from, after.id(), props.getChunkSize());
+        }, Function.identity());
+    }
+
+    private long countPending(Timestamp bound) {
+        Long count = jdbc.queryForObject(PENDING_SQL, Long.class, bound);
+        return count == null ? 0 : count;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        exclusive.shutdown();
+    }
+
+    private record Candidate(UUID id, String userId, LocalDateTime createdAt) {
+    }
+}
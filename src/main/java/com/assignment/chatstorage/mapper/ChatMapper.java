@@ -2,9 +2,11 @@ package com.assignment.chatstorage.mapper;
 
 import com.assignment.chatstorage.dto.Dtos;
 import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SearchHit;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
 import com.assignment.chatstorage.entity.ChatMessage;
 import com.assignment.chatstorage.entity.ChatSession;
+import com.assignment.chatstorage.repository.MessageSearchRow;
 import io.micrometer.common.util.StringUtils;
 
 public class ChatMapper {
@@ -20,7 +22,7 @@ public class ChatMapper {
 
     public static SessionView toSessionView(ChatSession session) {
         return new SessionView(session.getId(), session.getUserId(), session.getTitle(), session.getFavorite(), session.getCreatedAt(),
-                session.getUpdatedAt());
+                session.getUpdatedAt(), session.getMessageCount(), session.getLastMessageAt(), session.getContentBytes());
     }
 
     public static ChatMessage toChatEntity(Dtos.MessageCreate request, ChatSession session) {
@@ -36,7 +38,11 @@ public class ChatMapper {
 
     public static MessageView toMessageView(ChatMessage message) {
         return new MessageView(message.getId(), message.getSession().getId(), message.getCreatedBy(), message.getContent(), message.getContext(),
-                message.getCreatedAt());
+                message.getContextHash(), message.getCreatedAt());
+    }
+
+    public static SearchHit toSearchHit(MessageSearchRow row) {
+        return new SearchHit(row.getSessionId(), row.getMessageId(), row.getCreatedAt(), row.getRank(), row.getSnippet());
     }
 
 }
@@ -0,0 +1,67 @@
+package com.assignment.chatstorage.metrics;
+
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+/**
+ * Size distributions of the message read and write paths: rows per page served by listMessages and characters per
+ * message stored. Tags take a handful of fixed values, so they never multiply with users or sessions.
+ */
+@Component
+public class ChatMetrics {
+
+    private final DistributionSummary offsetPageRows;
+    private final DistributionSummary cursorPageRows;
+    private final DistributionSummary singleContent;
+    private final DistributionSummary batchContent;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.offsetPageRows = pageRows(registry, "offset");
+        this.cursorPageRows = pageRows(registry, "cursor");
+        this.singleContent = contentLength(registry, "single");
+        this.batchContent = contentLength(registry, "batch");
+    }
+
+    private static DistributionSummary pageRows(MeterRegistry registry, String paging) {
+        return DistributionSummary.builder("chat.messages.page.rows")
+                .description("Messages returned per listMessages page")
+                .baseUnit("messages")
+                .tag("paging", paging)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    private static DistributionSummary contentLength(MeterRegistry registry, String ingest) {
+        return DistributionSummary.builder("chat.messages.content.length")
+                .description("Content length of each stored message")
+                .baseUnit("characters")
+                .tag("ingest", ingest)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    /** A page of the offset-paged listMessages */
+    public void offsetPage(int rows) {
+        offsetPageRows.record(rows);
+    }
+
+    /** A page of the cursor-paged listMessages */
+    public void cursorPage(int rows) {
+        cursorPageRows.record(rows);
+    }
+
+    /** A message stored through addMessage */
+    public void message(MessageCreate message) {
+        singleContent.record(message.content().length());
+    }
+
+    /** Messages stored through one of the batch endpoints */
+    public void batch(List<MessageCreate> messages) {
+        for (MessageCreate message : messages) {
+            batchContent.record(message.content().length());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.assignment.chatstorage.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records the Hibernate statements each request ran as {@code chat.request.statements}, tagged with the HTTP method
+ * and the route template (never the concrete path, which would carry session ids). A request that goes async, such as
+ * an export stream, continues on another thread and is not recorded.
+ */
+@RequiredArgsConstructor
+public class StatementCountInterceptor implements AsyncHandlerInterceptor {
+
+    private final StatementCounter counter;
+    private final MeterRegistry registry;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) {
+        counter.start();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler) {
+        counter.finish();
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler,
+            Exception ex) {
+        int statements = counter.finish();
+        if (statements < 0) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("chat.request.statements")
+                .description("SQL statements Hibernate ran for one request")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .publishPercentiles(0.5, 0.99)
+                .register(registry)
+                .record(statements);
+    }
+}
@@ -0,0 +1,33 @@
+package com.assignment.chatstorage.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between {@link #start()} and {@link #finish()}.
+ * Threads that never started a count, such as the scheduled jobs, pass through untouched. Statements issued through
+ * JdbcTemplate bypass Hibernate and are not counted.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private final ThreadLocal<int[]> count = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] current = count.get();
+        if (current != null) {
+            current[0]++;
+        }
+        return sql;
+    }
+
+    public void start() {
+        count.set(new int[1]);
+    }
+
+    /** Ends the count; -1 when none was started on this thread */
+    public int finish() {
+        int[] current = count.get();
+        count.remove();
+        return current == null ? -1 : current[0];
+    }
+}
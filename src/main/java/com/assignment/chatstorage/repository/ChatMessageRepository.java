@@ -1,14 +1,114 @@
 package com.assignment.chatstorage.repository;
 
+import com.assignment.chatstorage.dto.Dtos;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
 import com.assignment.chatstorage.entity.ChatMessage;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
-import org.springframework.data.domain.Page;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
 
-    Page<ChatMessage> findBySessionId(UUID sessionId, Pageable pageable);
+    /*
+     * Listings project straight into MessageView rather than hydrating entities. The :content and :preview flags pick
+     * the form of the body: full text, a prefix plus its length, or nothing. Postgres only reads (and decompresses) the
+     * content column in the branch that is taken. Contexts are resolved separately through ContextStore.
+     */
+    String VIEW_COLUMNS = "select new com.assignment.chatstorage.dto.Dtos$MessageView(m.id, m.session.id, m.createdBy, "
+            + "case when :preview = true then left(m.content, " + Dtos.PREVIEW_LENGTH + ") when :content = true then m.content end, "
+            + "cast(null as String), m.contextHash, m.createdAt, "
+            + "case when :preview = true then length(m.content) end, "
+            + "case when :preview = true and length(m.content) > " + Dtos.PREVIEW_LENGTH + " then true "
+            + "when :preview = true then false end)\n";
+
+    /** A List result applies the Pageable's offset and sort without a count query; the total is ChatSession.messageCount */
+    @Query(VIEW_COLUMNS + "from ChatMessage m where m.session.id = :sessionId")
+    List<MessageView> findBySessionId(UUID sessionId, boolean content, boolean preview, Pageable pageable);
+
+    @Query(VIEW_COLUMNS + """
+            from ChatMessage m
+            where m.id = :id and m.session.id = :sessionId and m.createdAt >= :since
+            """)
+    Optional<MessageView> findInSession(UUID sessionId, UUID id, LocalDateTime since, boolean content, boolean preview);
+
+    /*
+     * The keyset queries below carry plain range predicates on createdAt (the session's earliest possible message
+     * time, and the cursor's own timestamp) next to the row comparison: Postgres only prunes message partitions on
+     * simple bounds of the partition key, not on (createdAt, id) tuples.
+     */
+
+    @Query(VIEW_COLUMNS + """
+            from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt asc, m.id asc
+            """)
+    List<MessageView> findFirstBySession(UUID sessionId, LocalDateTime since, boolean content, boolean preview, Limit limit);
+
+    @Query(VIEW_COLUMNS + """
+            from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :createdAt and (m.createdAt, m.id) > (:createdAt, :id)
+            order by m.createdAt asc, m.id asc
+            """)
+    List<MessageView> findAfter(UUID sessionId, LocalDateTime createdAt, UUID id, boolean content, boolean preview, Limit limit);
+
+    @Query(VIEW_COLUMNS + """
+            from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :since and m.createdAt <= :createdAt
+              and (m.createdAt, m.id) < (:createdAt, :id)
+            order by m.createdAt desc, m.id desc
+            """)
+    List<MessageView> findBefore(UUID sessionId, LocalDateTime since, LocalDateTime createdAt, UUID id, boolean content, boolean preview,
+            Limit limit);
+
+    /**
+     * Forward-only cursor over every message of a session. Must be consumed inside a transaction so the driver
+     * can honour the fetch size instead of buffering the whole result set.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(VIEW_COLUMNS + """
+            from ChatMessage m
+            where m.session.id = :sessionId and m.createdAt >= :since
+            order by m.createdAt asc, m.id asc
+            """)
+    Stream<MessageView> streamBySessionId(UUID sessionId, LocalDateTime since, boolean content, boolean preview);
+
+    /**
+     * Ranked full-text search over the messages of a user's live sessions, one keyset page at a time. Snippets are
+     * only built for the rows of the returned page, as {@code ts_headline} re-parses the whole message. The snippet is
+     * built from an HTML-escaped copy of the content, so the {@code <mark>} tags are the only markup in it.
+     */
+    @Query(nativeQuery = true, value = """
+            with terms as (select websearch_to_tsquery('english', :q) as tsq),
+            hits as (
+                select m.id, m.session_id, m.created_at, m.content, ts_rank(m.content_tsv, terms.tsq) as rank
+                from tbl_chat_messages m
+                join tbl_chat_sessions s on s.id = m.session_id
+                cross join terms
+                where s.user_id = :userId and s.is_deleted = false and m.content_tsv @@ terms.tsq
+                  and (ts_rank(m.content_tsv, terms.tsq), m.id) < (cast(:rank as real), :messageId)
+                order by rank desc, m.id desc
+                limit :limit
+            )
+            select hits.id as "messageId", hits.session_id as "sessionId", hits.created_at as "createdAt",
+                   hits.rank as "rank",
+                   ts_headline('english',
+                               replace(replace(replace(replace(replace(hits.content,
+                                   '&', '&amp;'), '<', '&lt;'), '>', '&gt;'), '"', '&quot;'), '''', '&#39;'),
+                               terms.tsq,
+                               'StartSel=<mark>, StopSel=</mark>, MaxWords=30, MinWords=10, MaxFragments=2') as "snippet"
+            from hits cross join terms
+            order by hits.rank desc, hits.id desc
+            """)
+    List<MessageSearchRow> search(String userId, String q, float rank, UUID messageId, int limit);
 }
@@ -1,16 +1,113 @@
 package com.assignment.chatstorage.repository;
 
 
+import com.assignment.chatstorage.cache.SessionMetadata;
+import com.assignment.chatstorage.dto.Dtos.SessionView;
 import com.assignment.chatstorage.entity.ChatSession;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
 
-    List<ChatSession> findByUserIdAndIsDeletedFalseOrderByUpdatedAtDesc(String userId);
+    /** Session listings project straight into SessionView rather than hydrating entities */
+    String VIEW_COLUMNS = "select new com.assignment.chatstorage.dto.Dtos$SessionView(s.id, s.userId, s.title, s.favorite, "
+            + "s.createdAt, s.updatedAt, "
+            + "s.messageCount, s.lastMessageAt, s.contentBytes)\n";
 
-    List<ChatSession> findByUserIdAndFavoriteAndIsDeletedFalseOrderByUpdatedAtDesc(String userId, boolean favorite);
+    @Query(VIEW_COLUMNS + """
+            from ChatSession s
+            where s.userId = :userId and s.isDeleted = false
+            order by coalesce(s.lastMessageAt, s.createdAt) desc
+            """)
+    List<SessionView> findViewsByUserId(String userId);
+
+    @Query(VIEW_COLUMNS + """
+            from ChatSession s
+            where s.userId = :userId and s.favorite = :favorite and s.isDeleted = false
+            order by coalesce(s.lastMessageAt, s.createdAt) desc
+            """)
+    List<SessionView> findViewsByUserIdAndFavorite(String userId, boolean favorite);
+
+    /*
+     * Single-statement changes: each one updates the row, bumps its version and returns it in one round-trip instead of
+     * a findById followed by a dirty-checked save. A negative :version matches any version; otherwise the row is only
+     * changed while it still has that version. Soft-deleted sessions are never matched, so they stay as absent here as
+     * they are to reads. The caller must not have the session loaded in its persistence context.
+     */
+    long ANY_VERSION = -1;
+
+    @Query(nativeQuery = true, value = """
+            update tbl_chat_sessions
+            set title = :title, updated_at = :now, version = version + 1
+            where id = :id and is_deleted = false and (:version < 0 or version = :version)
+            returning *
+            """)
+    Optional<ChatSession> updateTitle(UUID id, String title, long version, LocalDateTime now);
+
+    @Query(nativeQuery = true, value = """
+            update tbl_chat_sessions
+            set favorite = :favorite, updated_at = :now, version = version + 1
+            where id = :id and is_deleted = false and (:version < 0 or version = :version)
+            returning *
+            """)
+    Optional<ChatSession> updateFavorite(UUID id, boolean favorite, long version, LocalDateTime now);
+
+    @Query(nativeQuery = true, value = """
+            update tbl_chat_sessions
+            set is_deleted = true, deleted_at = coalesce(deleted_at, :now), updated_at = :now, version = version + 1
+            where id = :id and is_deleted = false and (:version < 0 or version = :version)
+            returning *
+            """)
+    Optional<ChatSession> markDeleted(UUID id, long version, LocalDateTime now);
+
+    /* Bulk variants: one statement for a whole selection, returning only the rows that exist and are not deleted */
+    @Query(nativeQuery = true, value = """
+            update tbl_chat_sessions
+            set favorite = :favorite, updated_at = :now, version = version + 1
+            where id in (:ids) and is_deleted = false
+            returning *
+            """)
+    List<ChatSession> updateFavoriteAll(Collection<UUID> ids, boolean favorite, LocalDateTime now);
+
+    @Query(nativeQuery = true, value = """
+            update tbl_chat_sessions
+            set is_deleted = true, deleted_at = coalesce(deleted_at, :now), updated_at = :now, version = version + 1
+            where id in (:ids) and is_deleted = false
+            returning *
+            """)
+    List<ChatSession> markDeletedAll(Collection<UUID> ids, LocalDateTime now);
+
+    boolean existsByIdAndIsDeletedFalse(UUID id);
+
+    @Query("select s.messageCount from ChatSession s where s.id = :id")
+    Optional<Long> findMessageCountById(UUID id);
+
+    /**
+     * Adds a write to the activity counters as one relative UPDATE: the row lock it takes serializes concurrent writers,
+     * so no increment is lost the way a read-modify-write through the entity would lose it.
+     */
+    @Modifying
+    @Query("""
+            update ChatSession s
+            set s.messageCount = s.messageCount + :count,
+                s.contentBytes = s.contentBytes + :bytes,
+                s.lastMessageAt = case when s.lastMessageAt is null or s.lastMessageAt < :lastMessageAt then :lastMessageAt
+                                       else s.lastMessageAt end
+            where s.id = :id
+            """)
+    int recordActivity(UUID id, long count, long bytes, LocalDateTime lastMessageAt);
+
+    @Query("select new com.assignment.chatstorage.cache.SessionMetadata(s.id, s.userId, s.isDeleted, s.archived) from ChatSession s where s.id = :id")
+    Optional<SessionMetadata> findMetadataById(UUID id);
+
+    @Query("select new com.assignment.chatstorage.cache.SessionMetadata(s.id, s.userId, s.isDeleted, s.archived) from ChatSession s where s.id in :ids")
+    List<SessionMetadata> findMetadataByIdIn(Collection<? extends UUID> ids);
 }
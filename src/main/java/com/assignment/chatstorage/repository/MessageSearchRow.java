@@ -0,0 +1,20 @@
+package com.assignment.chatstorage.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One ranked hit of {@link ChatMessageRepository#search}.
+ */
+public interface MessageSearchRow {
+
+    UUID getMessageId();
+
+    UUID getSessionId();
+
+    LocalDateTime getCreatedAt();
+
+    float getRank();
+
+    String getSnippet();
+}
@@ -0,0 +1,88 @@
+package com.assignment.chatstorage.security;
+
+import com.assignment.chatstorage.config.ConcurrencyLimitProperties;
+import java.util.function.LongSupplier;
+
+/**
+ * Gradient concurrency limit. Request latencies are averaged over short windows and compared with a slow long-term
+ * average. While the recent average stays within {@code rtt-tolerance} times the long-term one, the limit grows by
+ * about its square root per window. Once latency climbs past that, the limit shrinks in proportion, by at most half
+ * per window. A window in which fewer than half the permits were in use leaves the limit alone: low load says nothing
+ * about how much more the database would take.
+ */
+class AdaptiveLimit {
+
+    /** Windows the long-term average spans (a minute at the default 100ms window) */
+    private static final int LONG_WINDOWS = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int windowSamples;
+    private final LongSupplier nanoClock;
+
+    private volatile int limit;
+    private double estimate;
+    private double longRtt;
+    private long windowStart;
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+
+    AdaptiveLimit(ConcurrencyLimitProperties props, LongSupplier nanoClock) {
+        this.minLimit = Math.max(1, props.getMinLimit());
+        this.maxLimit = Math.max(minLimit, props.getMaxLimit());
+        this.tolerance = props.getRttTolerance();
+        this.smoothing = props.getSmoothing();
+        this.windowNanos = props.getWindow().toNanos();
+        this.windowSamples = Math.max(1, props.getWindowSamples());
+        this.nanoClock = nanoClock;
+        this.estimate = clamp(props.getInitialLimit());
+        this.limit = (int) estimate;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    /** Records the latency of a finished request and the number of requests that were in flight with it */
+    synchronized void onSample(long rttNanos, int inFlight) {
+        windowRttSum += rttNanos;
+        windowCount++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        long now = nanoClock.getAsLong();
+        if (now - windowStart < windowNanos || windowCount < windowSamples) {
+            return;
+        }
+        update((double) windowRttSum / windowCount, windowMaxInFlight);
+        windowStart = now;
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+    }
+
+    private void update(double shortRtt, int maxInFlight) {
+        if (shortRtt <= 0) {
+            return;
+        }
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) / LONG_WINDOWS;
+        if (longRtt / shortRtt > 2) {
+            // Latency has dropped well below the average a slowdown left behind; let the average follow quickly
+            longRtt *= 0.95;
+        }
+        if (maxInFlight < estimate / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = estimate * gradient + Math.sqrt(estimate);
+        estimate = clamp(estimate * (1 - smoothing) + next * smoothing);
+        limit = (int) estimate;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
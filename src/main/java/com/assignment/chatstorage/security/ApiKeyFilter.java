@@ -1,22 +1,40 @@
 package com.assignment.chatstorage.security;
 
+import com.assignment.chatstorage.config.RateLimitProperties;
 import com.assignment.chatstorage.constants.HeaderConstants;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+/**
+ * Admits requests carrying a known X-API-KEY: the service key {@code API_KEY}, or any key listed on a
+ * {@code ratelimit.tiers} entry, so a key given its own budget there can also call the API. Actuator endpoints other
+ * than health (metrics, and the purge and retention operations that hard-delete data) take the service key only.
+ */
 @Component
 @Order(1)
 public class ApiKeyFilter extends OncePerRequestFilter {
 
-    @Value("${API_KEY:change-me-please}")
-    private String apiKey;
+    private static final String ACTUATOR = "/actuator/";
+
+    private final String serviceKey;
+    private final Set<String> apiKeys = new HashSet<>();
+
+    public ApiKeyFilter(@Value("${API_KEY:change-me-please}") String apiKey, RateLimitProperties rateLimit) {
+        this.serviceKey = apiKey;
+        apiKeys.add(apiKey);
+        for (RateLimitProperties.Tier tier : rateLimit.getTiers().values()) {
+            apiKeys.addAll(tier.getApiKeys());
+        }
+    }
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
@@ -32,12 +50,18 @@ public class ApiKeyFilter extends OncePerRequestFilter {
 
         String provided = request.getHeader(HeaderConstants.API_KEY);
 
-        if (provided == null || !provided.equals(apiKey)) {
+        if (provided == null || !apiKeys.contains(provided)) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json");
             response.getWriter().write("Invalid API key");
             return;
         }
+        if (request.getRequestURI().startsWith(ACTUATOR) && !serviceKey.equals(provided)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.setContentType("application/json");
+            response.getWriter().write("Actuator endpoints require the service API key");
+            return;
+        }
         chain.doFilter(request, response);
     }
 }
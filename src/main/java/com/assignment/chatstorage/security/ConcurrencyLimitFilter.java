@@ -0,0 +1,183 @@
+package com.assignment.chatstorage.security;
+
+import com.assignment.chatstorage.config.ConcurrencyLimitProperties;
+import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Load shedding by in-flight requests. The token buckets of {@link RateLimitFilter} cap the request rate, which stays
+ * normal when the database slows down; what grows then is latency, and with it the requests parked on servlet threads
+ * waiting for a connection. This filter admits at most {@link AdaptiveLimit#limit()} requests at a time, a limit that
+ * shrinks as latency rises, and answers the rest at once with 503 and Retry-After. Reads may take only
+ * {@code concurrency.read-share} of the limit, so under pressure they are turned away before writes such as
+ * addMessage. Runs after the rate limiter, so requests it rejects never count here. An async request such as an export
+ * holds its permit until its response completes, not just until the servlet thread returns.
+ */
+@Slf4j
+@Component
+@Order(3)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final ConcurrencyLimitProperties props;
+    private final AdaptiveLimit limit;
+    private final String[] skipPaths;
+    private final String retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedReads;
+    private final Counter rejectedWrites;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.limit = new AdaptiveLimit(props, System::nanoTime);
+        this.skipPaths = props.getSkipPaths().toArray(String[]::new);
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (props.getRetryAfter().toMillis() + 999) / 1000));
+        Gauge.builder("chat.concurrency.limit", limit, AdaptiveLimit::limit)
+                .description("Requests currently allowed in flight")
+                .register(registry);
+        Gauge.builder("chat.concurrency.inflight", inFlight, AtomicInteger::get)
+                .description("Requests in flight")
+                .register(registry);
+        this.rejectedReads = rejections(registry, "read");
+        this.rejectedWrites = rejections(registry, "write");
+    }
+
+    private static Counter rejections(MeterRegistry registry, String priority) {
+        return Counter.builder("chat.concurrency.rejected")
+                .description("Requests answered with 503 because the concurrency limit was reached")
+                .tag("priority", priority)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        if (!props.isEnabled()) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        for (String skipPath : skipPaths) {
+            if (uri.startsWith(skipPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        boolean read = isRead(request);
+        int current = tryAcquire(read);
+        if (current < 0) {
+            (read ? rejectedReads : rejectedWrites).increment();
+            log.debug("Shed {} {}: {} in flight, limit {}", request.getMethod(), request.getRequestURI(), inFlight.get(), limit.limit());
+            reject(response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // An export keeps streaming after this thread returns; it holds its permit until the response is done
+                request.getAsyncContext().addListener(new ReleaseOnCompletion());
+            } else {
+                inFlight.decrementAndGet();
+                limit.onSample(System.nanoTime() - start, current);
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of an async request once, whichever way it ends. No latency sample is taken: a stream's
+     * duration follows the client's read speed and the response size, and says nothing about the database.
+     */
+    private final class ReleaseOnCompletion implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Restarted async processing keeps the permit; listeners must be registered again on the new context
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /** Takes a permit; returns the requests in flight including this one, or -1 when over the limit */
+    private int tryAcquire(boolean read) {
+        int allowed = limit.limit();
+        if (read) {
+            allowed = Math.max(1, (int) (allowed * props.getReadShare()));
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HeaderConstants.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType("application/json");
+        response.getWriter().write(String.format("{\"code\":\"%s\",\"message\":\"%s\"}",
+                ErrorCode.OVERLOADED.getCode(), ErrorCode.OVERLOADED.getDescription()));
+    }
+
+    /** Requests currently admitted */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /** The current adaptive limit */
+    public int currentLimit() {
+        return limit.limit();
+    }
+}
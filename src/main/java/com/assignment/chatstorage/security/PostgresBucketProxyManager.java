@@ -0,0 +1,170 @@
+package com.assignment.chatstorage.security;
+
+import com.assignment.chatstorage.config.RateLimitProperties;
+import io.github.bucket4j.BucketExceptions;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.AbstractSelectForUpdateBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.LockAndGetResult;
+import io.github.bucket4j.distributed.proxy.generic.select_for_update.SelectForUpdateBasedTransaction;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bucket4j proxy manager keeping bucket state in {@code tbl_rate_limit_buckets} (see V11__rate_limit_buckets.sql), the
+ * same select-for-update protocol as Bucket4j's PostgreSQL module: a node locks the row, applies its pending
+ * consumption to the stored state and writes it back. A row expires once its bucket would have refilled completely,
+ * and expired rows are deleted in batches.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ratelimit", name = "mode", havingValue = "distributed")
+public class PostgresBucketProxyManager extends AbstractSelectForUpdateBasedProxyManager<String> {
+
+    private static final String SELECT_FOR_UPDATE_SQL = "select state from tbl_rate_limit_buckets where id = ? for update";
+    private static final String INSERT_SQL = "insert into tbl_rate_limit_buckets (id, state) values (?, null) on conflict (id) do nothing";
+    private static final String UPDATE_SQL = "update tbl_rate_limit_buckets set state = ?, expires_at = ? where id = ?";
+    private static final String DELETE_SQL = "delete from tbl_rate_limit_buckets where id = ?";
+    private static final String DELETE_EXPIRED_SQL = """
+            delete from tbl_rate_limit_buckets where id in (
+                select id from tbl_rate_limit_buckets where expires_at < ? limit ? for update skip locked
+            )
+            """;
+
+    /** Kept a little longer than the refill time, so a row is never dropped while a node may still sync into it */
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(10);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final RateLimitProperties props;
+
+    public PostgresBucketProxyManager(DataSource dataSource, JdbcTemplate jdbc, RateLimitProperties props) {
+        super(ClientSideConfig.getDefault()
+                .withExpirationAfterWriteStrategy(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(EXPIRY_MARGIN)));
+        this.dataSource = dataSource;
+        this.jdbc = jdbc;
+        this.props = props;
+    }
+
+    @Override
+    protected SelectForUpdateBasedTransaction allocateTransaction(String key, Optional<Long> requestTimeoutNanos) {
+        Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw BucketExceptions.executionException(e);
+        }
+        return new SelectForUpdateBasedTransaction() {
+            @Override
+            public void begin(Optional<Long> timeoutNanos) {
+                run(() -> connection.setAutoCommit(false));
+            }
+
+            @Override
+            public void rollback() {
+                run(connection::rollback);
+            }
+
+            @Override
+            public void commit(Optional<Long> timeoutNanos) {
+                run(connection::commit);
+            }
+
+            @Override
+            public LockAndGetResult tryLockAndGet(Optional<Long> timeoutNanos) {
+                try (PreparedStatement select = connection.prepareStatement(SELECT_FOR_UPDATE_SQL)) {
+                    applyTimeout(select, timeoutNanos);
+                    select.setString(1, key);
+                    try (ResultSet rs = select.executeQuery()) {
+                        return rs.next() ? LockAndGetResult.locked(rs.getBytes(1)) : LockAndGetResult.notLocked();
+                    }
+                } catch (SQLException e) {
+                    throw BucketExceptions.executionException(e);
+                }
+            }
+
+            @Override
+            public boolean tryInsertEmptyData(Optional<Long> timeoutNanos) {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                    applyTimeout(insert, timeoutNanos);
+                    insert.setString(1, key);
+                    return insert.executeUpdate() > 0;
+                } catch (SQLException e) {
+                    throw BucketExceptions.executionException(e);
+                }
+            }
+
+            @Override
+            public void update(byte[] data, RemoteBucketState newState, Optional<Long> timeoutNanos) {
+                try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+                    applyTimeout(update, timeoutNanos);
+                    update.setBytes(1, data);
+                    update.setLong(2, expiresAt(newState));
+                    update.setString(3, key);
+                    update.executeUpdate();
+                } catch (SQLException e) {
+                    throw BucketExceptions.executionException(e);
+                }
+            }
+
+            @Override
+            public void release() {
+                run(connection::close);
+            }
+        };
+    }
+
+    private long expiresAt(RemoteBucketState state) {
+        long ttlMillis = getClientSideConfig().getExpirationAfterWriteStrategy().orElseThrow()
+                .calculateTimeToLiveMillis(state, currentTimeNanos());
+        return System.currentTimeMillis() + ttlMillis;
+    }
+
+    @Override
+    public void removeProxy(String key) {
+        jdbc.update(DELETE_SQL, key);
+    }
+
+    @Override
+    public boolean isExpireAfterWriteSupported() {
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.distributed.cleanup-interval:1m}")
+    public void removeExpired() {
+        int batch = props.getDistributed().getCleanupBatchSize();
+        int removed;
+        long total = 0;
+        do {
+            removed = jdbc.update(DELETE_EXPIRED_SQL, System.currentTimeMillis(), batch);
+            total += removed;
+        } while (removed == batch);
+        if (total > 0) {
+            log.debug("Removed {} expired rate limit buckets", total);
+        }
+    }
+
+    private static void run(SqlAction action) {
+        try {
+            action.run();
+        } catch (SQLException e) {
+            throw BucketExceptions.executionException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -3,34 +3,101 @@ package com.assignment.chatstorage.security;
 import com.assignment.chatstorage.config.RateLimitProperties;
 import com.assignment.chatstorage.exception.ErrorCode;
 import com.assignment.chatstorage.constants.HeaderConstants;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.assignment.chatstorage.security.RateLimitRules.Tier;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketExceptions;
 import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.time.Duration;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import lombok.RequiredArgsConstructor;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+/**
+ * Token-bucket rate limit per API key, or per client IP without one. Buckets live in two bounded caches, one per kind
+ * of key, so a flood of spoofed forwarded addresses cannot grow the heap or push out the API-key buckets. A bucket
+ * expires once it has been idle long enough to refill completely: a fresh bucket would be in exactly the same state.
+ * The header value itself is the cache key, so looking up a bucket allocates nothing in the common case. In distributed
+ * mode the cached buckets are near-cache proxies of rows shared through {@link PostgresBucketProxyManager}. The
+ * budget of a bucket comes from the API key's tier and the cost of a request from its route (see {@link RateLimitRules}).
+ * Decisions are counted as {@code chat.ratelimit.requests}, tagged with the tier and the result.
+ */
 @Slf4j
 @Component
 @Order(2)
-@RequiredArgsConstructor
 public class RateLimitFilter extends OncePerRequestFilter {
 
     private final RateLimitProperties props;
+    private final RateLimitRules rules;
+    private final String[] skipPaths;
+    @Nullable
+    private final ProxyManager<String> sharedBuckets;
+    private final Cache<String, TieredBucket> apiKeyBuckets;
+    private final Cache<String, TieredBucket> ipBuckets;
+    private final Function<String, TieredBucket> newApiKeyBucket;
+    private final Function<String, TieredBucket> newIpBucket;
+    private final Map<String, Counter> accepted = new HashMap<>();
+    private final Map<String, Counter> rejected = new HashMap<>();
+    private final Counter unavailable;
+
+    public RateLimitFilter(RateLimitProperties props, MeterRegistry registry) {
+        this(props, null, registry);
+    }
+
+    /** With a proxy manager (ratelimit.mode=distributed) the buckets are shared by all instances */
+    @Autowired
+    public RateLimitFilter(RateLimitProperties props, @Nullable ProxyManager<String> sharedBuckets, MeterRegistry registry) {
+        this.props = props;
+        this.rules = new RateLimitRules(props);
+        this.skipPaths = props.getSkipPaths() == null ? new String[0] : props.getSkipPaths().toArray(String[]::new);
+        this.sharedBuckets = sharedBuckets;
+        this.apiKeyBuckets = bucketCache(props);
+        this.ipBuckets = bucketCache(props);
+        this.newApiKeyBucket = key -> buildBucket("api:", key, rules.tierOf(key));
+        this.newIpBucket = key -> buildBucket("ip:", key, rules.tierOf(null));
+        for (Tier tier : rules.tiers()) {
+            accepted.put(tier.name(), decisions(registry, tier.name(), "accepted"));
+            rejected.put(tier.name(), decisions(registry, tier.name(), "rejected"));
+        }
+        this.unavailable = decisions(registry, "none", "unavailable");
+    }
 
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    /** Tier names come from configuration, so the tags stay bounded whatever the number of keys */
+    private static Counter decisions(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("chat.ratelimit.requests")
+                .description("Rate limit decisions; unavailable means the shared store failed and the request was let through")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /** Each bucket expires after the time it takes to refill completely on its own tier */
+    private static Cache<String, TieredBucket> bucketCache(RateLimitProperties props) {
+        return Caffeine.newBuilder()
+                .maximumSize(props.getMaxBuckets())
+                .expireAfter(Expiry.accessing((String key, TieredBucket bucket) -> bucket.tier().fullRefill()))
+                .build();
+    }
 
     @Override
     protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
@@ -40,29 +107,44 @@ public class RateLimitFilter extends OncePerRequestFilter {
         }
 
         String uri = request.getRequestURI();
-        List<String> skip = props.getSkipPaths();
-        return skip != null && skip.stream().anyMatch(uri::startsWith);
+        for (String skipPath : skipPaths) {
+            if (uri.startsWith(skipPath)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
 
-        Bucket bucket = resolveBucket(request);
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        TieredBucket bucket = resolveBucket(request);
+        ConsumptionProbe probe;
+        try {
+            probe = bucket.bucket().tryConsumeAndReturnRemaining(rules.weightOf(request, bucket.tier()));
+        } catch (BucketExceptions.BucketExecutionException e) {
+            // The shared store is unreachable: serve the request rather than fail every call with it
+            log.warn("Rate limit store unavailable, request let through: {}", e.getMessage());
+            unavailable.increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
 
         if (probe.isConsumed()) {
+            accepted.get(bucket.tier().name()).increment();
             if (props.isIncludeHeaders()) {
-                addHeaders(response, probe.getRemainingTokens());
+                addHeaders(response, bucket.tier(), probe.getRemainingTokens());
             }
             filterChain.doFilter(request, response);
         } else {
+            rejected.get(bucket.tier().name()).increment();
 
             long nanosToWait = probe.getNanosToWaitForReset();
             long secondsToWait = (long) Math.ceil(nanosToWait / 1_000_000_000.0);
 
             if (props.isIncludeHeaders()) {
-                addHeaders(response, 0);
+                addHeaders(response, bucket.tier(), 0);
                 response.setHeader(HeaderConstants.RETRY_AFTER, String.valueOf(secondsToWait));
             }
 
@@ -74,37 +156,88 @@ public class RateLimitFilter extends OncePerRequestFilter {
             response.setContentType("application/json");
             response.getWriter().write(body);
 
-            log.warn("Rate limit exceeded for key={} uri={} waitSeconds={}", keyFrom(request), request.getRequestURI(), secondsToWait);
+            log.warn("Rate limit exceeded for key={} uri={} waitSeconds={}", describeKey(request), request.getRequestURI(), secondsToWait);
         }
     }
 
-    private void addHeaders(HttpServletResponse response, long remaining) {
-        response.setHeader(HeaderConstants.RATE_LIMIT_LIMIT, String.valueOf(props.getCapacity()));
+    private void addHeaders(HttpServletResponse response, Tier tier, long remaining) {
+        response.setHeader(HeaderConstants.RATE_LIMIT_LIMIT, String.valueOf(tier.limit()));
         response.setHeader(HeaderConstants.RATE_LIMIT_REMAINING, String.valueOf(remaining));
     }
 
-    private Bucket resolveBucket(HttpServletRequest request) {
-        String key = keyFrom(request);
-        return buckets.computeIfAbsent(key, k -> buildBucket());
+    private TieredBucket resolveBucket(HttpServletRequest request) {
+        String apiKey = apiKeyOf(request);
+        if (apiKey != null) {
+            return apiKeyBuckets.get(apiKey, newApiKeyBucket);
+        }
+        return ipBuckets.get(clientAddress(request), newIpBucket);
+    }
+
+    private String apiKeyOf(HttpServletRequest request) {
+        if (!props.isPerApiKey()) {
+            return null;
+        }
+        String apiKey = request.getHeader(HeaderConstants.API_KEY);
+        return apiKey == null || apiKey.isBlank() ? null : apiKey;
     }
 
-    private String keyFrom(HttpServletRequest request) {
-        if (props.isPerApiKey()) {
-            String apiKey = request.getHeader(HeaderConstants.API_KEY);
-            if (apiKey != null && !apiKey.isBlank()) {
-                return "api:" + apiKey;
+    /**
+     * The first address of X-Forwarded-For, else the peer address. Returns the header value itself when it holds a
+     * single address, and otherwise copies out only the first entry.
+     */
+    static String clientAddress(HttpServletRequest request) {
+        String forwarded = request.getHeader(HeaderConstants.FORWARDED_FOR);
+        if (forwarded != null) {
+            int end = forwarded.indexOf(',');
+            if (end < 0) {
+                end = forwarded.length();
+            }
+            int start = 0;
+            while (start < end && Character.isWhitespace(forwarded.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(forwarded.charAt(end - 1))) {
+                end--;
+            }
+            if (start < end) {
+                return start == 0 && end == forwarded.length() ? forwarded : forwarded.substring(start, end);
             }
         }
-        String forwarded = request.getHeader("X-Forwarded-For");
-        String ip = (forwarded != null && !forwarded.isBlank()) ? forwarded.split(",")[0].trim() : request.getRemoteAddr();
-        return "ip:" + (ip == null ? "unknown" : ip);
+        String remote = request.getRemoteAddr();
+        return remote == null ? "unknown" : remote;
     }
 
-    private Bucket buildBucket() {
-        Bandwidth limit = Bandwidth.builder()
-                .capacity(props.getCapacity())
-                .refillGreedy(props.getRefillTokens(), Duration.ofSeconds(props.getRefillPeriodSeconds()))
-                .build();
-        return Bucket.builder().addLimit(limit).build();
+    private String describeKey(HttpServletRequest request) {
+        String apiKey = apiKeyOf(request);
+        return apiKey != null ? "api:" + apiKey : "ip:" + clientAddress(request);
+    }
+
+    /** Buckets currently held, both kinds together */
+    public long bucketCount() {
+        apiKeyBuckets.cleanUp();
+        ipBuckets.cleanUp();
+        return apiKeyBuckets.estimatedSize() + ipBuckets.estimatedSize();
+    }
+
+    /**
+     * A local bucket, or in distributed mode a proxy of the shared one. The proxy consumes up to
+     * {@code ratelimit.distributed.sync-tokens} locally and then settles them with the database in one round trip.
+     */
+    private TieredBucket buildBucket(String kind, String key, Tier tier) {
+        if (sharedBuckets == null) {
+            LocalBucketBuilder local = Bucket.builder();
+            for (Bandwidth bandwidth : tier.configuration().getBandwidths()) {
+                local.addLimit(bandwidth);
+            }
+            return new TieredBucket(local.build(), tier);
+        }
+        RateLimitProperties.Distributed distributed = props.getDistributed();
+        Bucket shared = sharedBuckets.builder()
+                .withOptimization(Optimizations.delaying(new DelayParameters(distributed.getSyncTokens(), distributed.getSyncInterval())))
+                .build(kind + key, tier::configuration);
+        return new TieredBucket(shared, tier);
+    }
+
+    private record TieredBucket(Bucket bucket, Tier tier) {
     }
 }
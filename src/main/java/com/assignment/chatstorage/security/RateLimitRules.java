@@ -0,0 +1,139 @@
+package com.assignment.chatstorage.security;
+
+import com.assignment.chatstorage.config.RateLimitProperties;
+import com.assignment.chatstorage.config.RateLimitProperties.Limit;
+import com.assignment.chatstorage.config.RateLimitProperties.Route;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConfigurationBuilder;
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.ServletRequestPathUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * {@link RateLimitProperties} compiled once: bucket configurations per tier, the API key to tier lookup and the route
+ * patterns. A request costs a map lookup for its tier and one pattern match per route until the first hit.
+ */
+class RateLimitRules {
+
+    private final Tier defaultTier;
+    private final Map<String, Tier> tiersByApiKey = new HashMap<>();
+    private final List<CompiledRoute> routes;
+
+    RateLimitRules(RateLimitProperties props) {
+        Limit limit = new Limit();
+        limit.setCapacity(props.getCapacity());
+        limit.setRefillTokens(props.getRefillTokens());
+        limit.setRefillPeriod(Duration.ofSeconds(props.getRefillPeriodSeconds()));
+        this.defaultTier = new Tier("default", List.of(limit));
+        props.getTiers().forEach((name, tier) -> {
+            if (tier.getBandwidths().isEmpty()) {
+                throw new IllegalStateException("Rate limit tier " + name + " has no bandwidths");
+            }
+            Tier compiled = new Tier(name, tier.getBandwidths());
+            tier.getApiKeys().forEach(apiKey -> tiersByApiKey.put(apiKey, compiled));
+        });
+        this.routes = props.getRoutes().stream().map(CompiledRoute::new).toList();
+    }
+
+    /** The tier of an API key; the default tier for unknown keys and for requests identified by client IP */
+    Tier tierOf(String apiKey) {
+        return apiKey == null ? defaultTier : tiersByApiKey.getOrDefault(apiKey, defaultTier);
+    }
+
+    /** The default tier followed by every configured one */
+    Collection<Tier> tiers() {
+        Collection<Tier> tiers = new LinkedHashSet<>();
+        tiers.add(defaultTier);
+        tiers.addAll(tiersByApiKey.values());
+        return tiers;
+    }
+
+    /** Tokens the request costs on the given tier */
+    long weightOf(HttpServletRequest request, Tier tier) {
+        if (routes.isEmpty()) {
+            return 1;
+        }
+        PathContainer path = ServletRequestPathUtils.hasParsedRequestPath(request)
+                ? ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication()
+                : ServletRequestPathUtils.parseAndCache(request).pathWithinApplication();
+        for (CompiledRoute route : routes) {
+            if (route.matches(request.getMethod(), path)) {
+                return Math.max(1, Math.min(route.weightOf(request), tier.smallestCapacity()));
+            }
+        }
+        return 1;
+    }
+
+    record Tier(String name, BucketConfiguration configuration, long limit, long smallestCapacity, Duration fullRefill) {
+
+        Tier(String name, List<Limit> limits) {
+            this(name, configuration(limits), limits.get(0).getCapacity(),
+                    limits.stream().mapToLong(Limit::getCapacity).min().orElseThrow(), fullRefill(limits));
+        }
+
+        private static BucketConfiguration configuration(List<Limit> limits) {
+            ConfigurationBuilder builder = BucketConfiguration.builder();
+            limits.forEach(limit -> builder.addLimit(Bandwidth.builder()
+                    .capacity(limit.getCapacity())
+                    .refillGreedy(limit.getRefillTokens(), limit.getRefillPeriod())
+                    .build()));
+            return builder.build();
+        }
+
+        /** Time an empty bucket takes to fill every bandwidth up again */
+        private static Duration fullRefill(List<Limit> limits) {
+            return limits.stream()
+                    .map(limit -> limit.getRefillPeriod().multipliedBy(
+                            Math.max(1, (limit.getCapacity() + limit.getRefillTokens() - 1) / Math.max(1, limit.getRefillTokens()))))
+                    .max(Duration::compareTo)
+                    .orElseThrow();
+        }
+    }
+
+    private static final class CompiledRoute {
+
+        private final String method;
+        private final PathPattern pattern;
+        private final long weight;
+        private final String sizeParameter;
+        private final int sizeUnit;
+
+        private CompiledRoute(Route route) {
+            this.method = route.getMethod();
+            this.pattern = PathPatternParser.defaultInstance.parse(route.getPattern());
+            this.weight = route.getWeight();
+            this.sizeParameter = route.getSizeParameter();
+            this.sizeUnit = Math.max(1, route.getSizeUnit());
+        }
+
+        private boolean matches(String requestMethod, PathContainer path) {
+            return (method == null || method.equalsIgnoreCase(requestMethod)) && pattern.matches(path);
+        }
+
+        private long weightOf(HttpServletRequest request) {
+            if (sizeParameter == null) {
+                return weight;
+            }
+            String size = request.getParameter(sizeParameter);
+            if (size == null) {
+                return weight;
+            }
+            try {
+                long rows = Long.parseLong(size);
+                return weight * Math.max(1, (rows + sizeUnit - 1) / sizeUnit);
+            } catch (NumberFormatException e) {
+                // The controller rejects it; charge the base weight
+                return weight;
+            }
+        }
+    }
+}
@@ -1,28 +1,59 @@
 package com.assignment.chatstorage.service;
 
+import com.assignment.chatstorage.dto.CursorPage;
+import com.assignment.chatstorage.dto.Dtos.ContextView;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.Versioned;
 import com.assignment.chatstorage.dto.Dtos.MessageCreate;
 import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SearchHit;
+import com.assignment.chatstorage.dto.Dtos.SessionBulkRequest;
+import com.assignment.chatstorage.dto.Dtos.SessionBulkResult;
 import com.assignment.chatstorage.dto.Dtos.SessionCreate;
 import com.assignment.chatstorage.dto.Dtos.SessionFavorite;
+import com.assignment.chatstorage.dto.Dtos.SessionMessageCreate;
 import com.assignment.chatstorage.dto.Dtos.SessionRename;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 import org.springframework.data.domain.Page;
 
 public interface ChatService {
 
     SessionView createSession(SessionCreate req);
 
+    Versioned<SessionView> getSession(UUID id);
+
     List<SessionView> listSessions(String userId, Boolean favorite);
 
-    SessionView rename(UUID id, SessionRename req);
+    /** expectedVersion is the If-Match version, or null to apply the change whatever the current version */
+    Versioned<SessionView> rename(UUID id, SessionRename req, Long expectedVersion);
+
+    Versioned<SessionView> favorite(UUID id, SessionFavorite req, Long expectedVersion);
 
-    SessionView favorite(UUID id, SessionFavorite req);
+    void deleteSession(UUID id, Long expectedVersion);
 
-    void deleteSession(UUID id);
+    SessionBulkResult bulkUpdate(SessionBulkRequest req);
 
     MessageView addMessage(UUID sessionId, MessageCreate req);
 
-    Page<MessageView> listMessages(UUID sessionId, int page, int size);
+    List<MessageView> addMessages(UUID sessionId, List<MessageCreate> reqs);
+
+    List<MessageView> addMessages(List<SessionMessageCreate> reqs);
+
+    Page<MessageView> listMessages(UUID sessionId, int page, int size, MessageListOptions options);
+
+    CursorPage<MessageView> listMessages(UUID sessionId, String after, String before, int size, MessageListOptions options);
+
+    MessageView getMessage(UUID sessionId, UUID messageId);
+
+    long exportMessages(UUID sessionId, Consumer<MessageView> sink);
+
+    /** Throws SESSION_NOT_FOUND for a missing or soft-deleted session; answered from the session metadata cache */
+    void requireSession(UUID sessionId);
+
+    ContextView getContext(String hash);
+
+    CursorPage<SearchHit> searchMessages(String userId, String query, String after, int size);
 }
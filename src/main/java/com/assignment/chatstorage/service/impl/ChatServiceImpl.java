@@ -1,37 +1,91 @@
 package com.assignment.chatstorage.service.impl;
 
 
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadata;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.datasource.ReadYourWrites;
+import com.assignment.chatstorage.dto.CursorPage;
+import com.assignment.chatstorage.dto.Dtos.ContextView;
 import com.assignment.chatstorage.dto.Dtos.MessageCreate;
 import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SearchHit;
 import com.assignment.chatstorage.dto.Dtos.SessionCreate;
 import com.assignment.chatstorage.dto.Dtos.SessionFavorite;
+import com.assignment.chatstorage.dto.Dtos.SessionMessageCreate;
 import com.assignment.chatstorage.dto.Dtos.SessionRename;
+import com.assignment.chatstorage.dto.Dtos.SessionBulkItem;
+import com.assignment.chatstorage.dto.Dtos.SessionBulkRequest;
+import com.assignment.chatstorage.dto.Dtos.SessionBulkResult;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
-import com.assignment.chatstorage.entity.ChatMessage;
+import com.assignment.chatstorage.dto.MessageCursor;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.Versioned;
+import com.assignment.chatstorage.dto.SearchCursor;
 import com.assignment.chatstorage.entity.ChatSession;
 import com.assignment.chatstorage.exception.CustomGlobalException;
 import com.assignment.chatstorage.exception.ErrorCode;
 import com.assignment.chatstorage.mapper.ChatMapper;
+import com.assignment.chatstorage.metrics.ChatMetrics;
 import com.assignment.chatstorage.repository.ChatMessageRepository;
 import com.assignment.chatstorage.repository.ChatSessionRepository;
+import com.assignment.chatstorage.repository.MessageSearchRow;
 import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.util.UuidV7;
+import io.micrometer.core.annotation.Timed;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.lang.Nullable;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+// Every method gets a chat.service timer tagged with its name (and the exception class on failure)
+@Timed(value = "chat.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class ChatServiceImpl implements ChatService {
 
+    /** Allowance for clock skew between the instance that created a session and the ones writing its messages */
+    private static final Duration SESSION_CLOCK_SKEW = Duration.ofHours(1);
+    private static final LocalDateTime NO_LOWER_BOUND = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int MAX_SEARCH_QUERY_LENGTH = 256;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private final ChatSessionRepository sessionRepo;
     private final ChatMessageRepository messageRepo;
+    private final MessageWriter messageWriter;
+    private final SessionMetadataCache sessionCache;
+    private final SessionListCache sessionListCache;
+    private final SessionArchiver sessionArchiver;
+    private final ContextStore contextStore;
+    private final ReadYourWrites readYourWrites;
+    private final ChatMetrics chatMetrics;
+    @Nullable
+    private final GroupCommitIngestor groupCommitIngestor;
 
     @Override
     @Transactional
@@ -39,67 +93,407 @@ public class ChatServiceImpl implements ChatService {
         log.info("Creating chat session for userId={}", req.userId());
         ChatSession session = ChatMapper.toSessionEntity(req);
         session = sessionRepo.save(session);
+        sessionListCache.invalidate(session.getUserId());
+        written(session);
         log.debug("Created session id={}", session.getId());
         return ChatMapper.toSessionView(session);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Versioned<SessionView> getSession(UUID id) {
+        log.debug("Getting session id={}", id);
+        readYourWrites.readOf(id);
+        return sessionRepo.findById(id).filter(session -> !session.getIsDeleted()).map(ChatServiceImpl::versioned)
+                .orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<SessionView> listSessions(String userId, Boolean favorite) {
         log.info("Listing sessions for userId={} favorite={}", userId, favorite);
-        List<ChatSession> list = (favorite == null) ? sessionRepo.findByUserIdAndIsDeletedFalseOrderByUpdatedAtDesc(userId)
-                : sessionRepo.findByUserIdAndFavoriteAndIsDeletedFalseOrderByUpdatedAtDesc(userId, favorite);
-        return list.stream().map(ChatMapper::toSessionView).toList();
+        readYourWrites.readOf(userId);
+        if (sessionListCache.isEnabled()) {
+            List<SessionView> all = sessionListCache.get(userId, sessionRepo::findViewsByUserId);
+            return favorite == null ? all : all.stream().filter(s -> s.isFavorite() == favorite).toList();
+        }
+        return favorite == null ? sessionRepo.findViewsByUserId(userId) : sessionRepo.findViewsByUserIdAndFavorite(userId, favorite);
     }
 
     @Override
     @Transactional
-    public SessionView rename(UUID id, SessionRename req) {
-        log.info("Renaming session id={}", id);
-        ChatSession session = sessionRepo.findById(id).orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
-        session.setTitle(req.title());
-        session = sessionRepo.save(session);
+    public Versioned<SessionView> rename(UUID id, SessionRename req, Long expectedVersion) {
+        log.info("Renaming session id={} expectedVersion={}", id, expectedVersion);
+        ChatSession session = sessionRepo.updateTitle(id, req.title(), versionOrAny(expectedVersion), LocalDateTime.now())
+                .orElseThrow(() -> notUpdated(id, expectedVersion));
+        sessionCache.invalidate(id);
+        sessionListCache.invalidate(session.getUserId());
+        written(session);
         log.debug("Renamed session id={} newTitle={}", id, req.title());
-        return ChatMapper.toSessionView(session);
+        return versioned(session);
     }
 
     @Override
     @Transactional
-    public SessionView favorite(UUID id, SessionFavorite req) {
-        log.info("Updating favorite for session id={} favorite={}", id, req.isFavorite());
-        ChatSession session = sessionRepo.findById(id).orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
-        session.setFavorite(req.isFavorite());
-        session = sessionRepo.save(session);
+    public Versioned<SessionView> favorite(UUID id, SessionFavorite req, Long expectedVersion) {
+        log.info("Updating favorite for session id={} favorite={} expectedVersion={}", id, req.isFavorite(), expectedVersion);
+        ChatSession session = sessionRepo.updateFavorite(id, req.isFavorite(), versionOrAny(expectedVersion), LocalDateTime.now())
+                .orElseThrow(() -> notUpdated(id, expectedVersion));
+        sessionCache.invalidate(id);
+        sessionListCache.invalidate(session.getUserId());
+        written(session);
         log.debug("Updated favorite id={} favorite={}", id, req.isFavorite());
-        return ChatMapper.toSessionView(session);
+        return versioned(session);
     }
 
     @Override
     @Transactional
-    public void deleteSession(UUID id) {
-        log.info("Soft-deleting session id={}", id);
-        ChatSession session = sessionRepo.findById(id).orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
-        session.setIsDeleted(true);
-        sessionRepo.save(session);
+    public void deleteSession(UUID id, Long expectedVersion) {
+        log.info("Soft-deleting session id={} expectedVersion={}", id, expectedVersion);
+        ChatSession session = sessionRepo.markDeleted(id, versionOrAny(expectedVersion), LocalDateTime.now())
+                .orElseThrow(() -> notUpdated(id, expectedVersion));
+        sessionCache.invalidate(id);
+        sessionListCache.invalidate(session.getUserId());
+        written(session);
     }
 
     @Override
     @Transactional
+    public SessionBulkResult bulkUpdate(SessionBulkRequest req) {
+        Set<UUID> ids = new LinkedHashSet<>(req.ids());
+        log.info("Bulk {} of {} sessions", req.operation(), ids.size());
+        LocalDateTime now = LocalDateTime.now();
+        List<ChatSession> updated = switch (req.operation()) {
+            case DELETE -> sessionRepo.markDeletedAll(ids, now);
+            case FAVORITE -> sessionRepo.updateFavoriteAll(ids, true, now);
+            case UNFAVORITE -> sessionRepo.updateFavoriteAll(ids, false, now);
+        };
+        Map<UUID, ChatSession> byId = updated.stream().collect(Collectors.toMap(ChatSession::getId, Function.identity()));
+        byId.keySet().forEach(sessionCache::invalidate);
+        updated.stream().map(ChatSession::getUserId).distinct().forEach(sessionListCache::invalidate);
+        updated.forEach(this::written);
+
+        List<SessionBulkItem> results = ids.stream()
+                .map(id -> byId.containsKey(id)
+                        ? new SessionBulkItem(id, SessionBulkItem.Status.UPDATED, byId.get(id).getVersion())
+                        : new SessionBulkItem(id, SessionBulkItem.Status.NOT_FOUND, null))
+                .toList();
+        log.debug("Bulk {} updated {} of {} sessions", req.operation(), updated.size(), ids.size());
+        return new SessionBulkResult(req.operation(), updated.size(), results);
+    }
+
+    private static Versioned<SessionView> versioned(ChatSession session) {
+        return new Versioned<>(ChatMapper.toSessionView(session), session.getVersion());
+    }
+
+    /** Keeps the next reads of the session and of its owner's list on the primary */
+    private void written(ChatSession session) {
+        readYourWrites.written(session.getId());
+        readYourWrites.written(session.getUserId());
+    }
+
+    private static long versionOrAny(Long expectedVersion) {
+        return expectedVersion == null ? ChatSessionRepository.ANY_VERSION : expectedVersion;
+    }
+
+    /**
+     * A conditional update that matched no row: the session is missing or deleted, or (only then worth a query) was
+     * changed since
+     */
+    private CustomGlobalException notUpdated(UUID id, Long expectedVersion) {
+        if (expectedVersion != null && sessionRepo.existsByIdAndIsDeletedFalse(id)) {
+            return new CustomGlobalException(ErrorCode.SESSION_MODIFIED);
+        }
+        return new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND);
+    }
+
+    @Override
     public MessageView addMessage(UUID sessionId, MessageCreate req) {
         log.info("Adding message to session id={}", sessionId);
-        ChatSession session = sessionRepo.findById(sessionId).orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
-        ChatMessage message = ChatMapper.toChatEntity(req, session);
-        message = messageRepo.save(message);
-        log.debug("Saved message id={} for session id={}", message.getId(), sessionId);
-        return ChatMapper.toMessageView(message);
+        chatMetrics.message(req);
+        if (groupCommitIngestor != null) {
+            return groupCommitIngestor.submit(sessionId, req);
+        }
+        MessageView message = messageWriter.write(sessionId, List.of(req)).get(0);
+        log.debug("Saved message id={} for session id={}", message.id(), sessionId);
+        return message;
     }
 
     @Override
-    public Page<MessageView> listMessages(UUID sessionId, int page, int size) {
+    public List<MessageView> addMessages(UUID sessionId, List<MessageCreate> reqs) {
+        log.info("Adding {} messages to session id={}", reqs.size(), sessionId);
+        chatMetrics.batch(reqs);
+        return messageWriter.write(sessionId, reqs);
+    }
+
+    @Override
+    public List<MessageView> addMessages(List<SessionMessageCreate> reqs) {
+        log.info("Adding {} messages across sessions", reqs.size());
+        chatMetrics.batch(reqs.stream().map(SessionMessageCreate::message).toList());
+        return messageWriter.write(reqs);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MessageView> listMessages(UUID sessionId, int page, int size, MessageListOptions options) {
         log.debug("Listing messages for session id={} page={} size={}", sessionId, page, size);
+        readYourWrites.readOf(sessionId);
 
         var pageable = PageRequest.of(Math.max(0, page), Math.max(1, size)).withSort(Sort.Direction.ASC, "createdAt");
 
-        Page<ChatMessage> items = messageRepo.findBySessionId(sessionId, pageable);
-        return items.map(ChatMapper::toMessageView);
+        if (requireReadable(sessionId).archived()) {
+            return archivedPage(sessionId, pageable, options);
+        }
+
+        // The stored counter replaces a count(*) over the session's messages on every page
+        long total = sessionRepo.findMessageCountById(sessionId).orElse(0L);
+        List<MessageView> items = messageRepo.findBySessionId(sessionId, options.selectContent(), options.selectPreview(), pageable);
+        if (items.isEmpty() && archivedSince(sessionId)) {
+            return archivedPage(sessionId, pageable, options);
+        }
+        chatMetrics.offsetPage(items.size());
+        return new PageImpl<>(withContexts(items, options), pageable, total);
+    }
+
+    private Page<MessageView> archivedPage(UUID sessionId, Pageable pageable, MessageListOptions options) {
+        List<MessageView> all = archivedMessages(sessionId, options);
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        chatMetrics.offsetPage(to - from);
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<MessageView> listMessages(UUID sessionId, String after, String before, int size, MessageListOptions options) {
+        log.debug("Listing messages for session id={} after={} before={} size={}", sessionId, after, before, size);
+        readYourWrites.readOf(sessionId);
+
+        if (after != null && before != null) {
+            throw new CustomGlobalException(ErrorCode.INVALID_CURSOR);
+        }
+
+        int pageSize = Math.max(1, size);
+        boolean backward = before != null;
+        MessageCursor cursor = after != null ? MessageCursor.decode(after) : backward ? MessageCursor.decode(before) : null;
+
+        // Fetch one extra row to learn whether another page exists without running a count query
+        List<MessageView> rows = requireReadable(sessionId).archived()
+                ? seekArchived(sessionId, cursor, backward, pageSize + 1, options)
+                : seekHot(sessionId, cursor, backward, Limit.of(pageSize + 1), options);
+        if (rows.isEmpty() && archivedSince(sessionId)) {
+            rows = seekArchived(sessionId, cursor, backward, pageSize + 1, options);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<MessageView> content = new ArrayList<>(rows.subList(0, Math.min(pageSize, rows.size())));
+        if (backward) {
+            Collections.reverse(content);
+        }
+        chatMetrics.cursorPage(content.size());
+
+        String nextCursor = null;
+        String prevCursor = null;
+        if (!content.isEmpty()) {
+            String first = MessageCursor.of(content.get(0)).encode();
+            String last = MessageCursor.of(content.get(content.size() - 1)).encode();
+            nextCursor = (backward || hasMore) ? last : null;
+            prevCursor = backward ? (hasMore ? first : null) : (after != null ? first : null);
+        }
+        return new CursorPage<>(content, pageSize, nextCursor, prevCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MessageView getMessage(UUID sessionId, UUID messageId) {
+        log.debug("Getting message id={} of session id={}", messageId, sessionId);
+        readYourWrites.readOf(sessionId);
+        if (requireReadable(sessionId).archived()) {
+            return archivedMessage(sessionId, messageId);
+        }
+        // A v7 message id bounds its own creation time, the same way a session id bounds its messages
+        Optional<MessageView> message = messageRepo.findInSession(sessionId, messageId, earliestMessageTime(messageId), true, false);
+        if (message.isEmpty() && archivedSince(sessionId)) {
+            return archivedMessage(sessionId, messageId);
+        }
+        return withContexts(List.of(message.orElseThrow(() -> new CustomGlobalException(ErrorCode.MESSAGE_NOT_FOUND))),
+                MessageListOptions.DEFAULT).get(0);
+    }
+
+    private MessageView archivedMessage(UUID sessionId, UUID messageId) {
+        return archivedMessages(sessionId, MessageListOptions.DEFAULT).stream()
+                .filter(view -> view.id().equals(messageId))
+                .findFirst()
+                .orElseThrow(() -> new CustomGlobalException(ErrorCode.MESSAGE_NOT_FOUND));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportMessages(UUID sessionId, Consumer<MessageView> sink) {
+        log.info("Exporting messages for session id={}", sessionId);
+        readYourWrites.readOf(sessionId);
+        if (requireReadable(sessionId).archived()) {
+            return exportArchived(sessionId, sink);
+        }
+
+        long count = 0;
+        // Rows are written in chunks so each chunk resolves its contexts with one query
+        List<MessageView> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<MessageView> messages = messageRepo.streamBySessionId(sessionId, earliestMessageTime(sessionId), true, false)) {
+            for (var it = messages.iterator(); it.hasNext(); ) {
+                chunk.add(it.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE || !it.hasNext()) {
+                    // Views are not managed entities, so nothing accumulates in the persistence context
+                    withContexts(chunk, MessageListOptions.DEFAULT).forEach(sink);
+                    count += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        if (count == 0 && archivedSince(sessionId)) {
+            return exportArchived(sessionId, sink);
+        }
+        log.debug("Exported {} messages for session id={}", count, sessionId);
+        return count;
+    }
+
+    private long exportArchived(UUID sessionId, Consumer<MessageView> sink) {
+        List<MessageView> messages = archivedMessages(sessionId, MessageListOptions.DEFAULT);
+        messages.forEach(sink);
+        return messages.size();
+    }
+
+    /**
+     * One page of a hot session, nearest rows to the cursor first (descending when paging backward).
+     */
+    private List<MessageView> seekHot(UUID sessionId, MessageCursor cursor, boolean backward, Limit limit, MessageListOptions options) {
+        boolean content = options.selectContent();
+        boolean preview = options.selectPreview();
+        List<MessageView> rows;
+        if (cursor == null) {
+            rows = messageRepo.findFirstBySession(sessionId, earliestMessageTime(sessionId), content, preview, limit);
+        } else if (backward) {
+            rows = messageRepo.findBefore(sessionId, earliestMessageTime(sessionId), cursor.createdAt(), cursor.id(), content, preview, limit);
+        } else {
+            rows = messageRepo.findAfter(sessionId, cursor.createdAt(), cursor.id(), content, preview, limit);
+        }
+        return withContexts(rows, options);
+    }
+
+    /**
+     * Same contract as {@link #seekHot}, answered from the decompressed archive.
+     */
+    private List<MessageView> seekArchived(UUID sessionId, MessageCursor cursor, boolean backward, int limit, MessageListOptions options) {
+        List<MessageView> rows = archivedMessages(sessionId, options).stream()
+                .filter(message -> cursor == null || (backward ? cursor.compareTo(message) > 0 : cursor.compareTo(message) < 0))
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (backward) {
+            Collections.reverse(rows);
+        }
+        return rows.subList(0, Math.min(limit, rows.size()));
+    }
+
+    /**
+     * Every message of an archived session: the archive plus rows that reached the hot table after it was built,
+     * which stay there until the next restore.
+     */
+    private List<MessageView> archivedMessages(UUID sessionId, MessageListOptions options) {
+        List<MessageView> messages = new ArrayList<>();
+        for (MessageView message : sessionArchiver.read(sessionId)) {
+            messages.add(options.preview() ? message.preview() : options.resolveContexts() ? message : message.withoutContext());
+        }
+        messages.addAll(seekHot(sessionId, null, false, Limit.unlimited(), options));
+        messages.sort(MessageCursor.ORDER);
+        return messages;
+    }
+
+    /**
+     * Fills in context payloads with one lookup for the whole page, unless the listing does not return them.
+     */
+    private List<MessageView> withContexts(List<MessageView> views, MessageListOptions options) {
+        if (!options.resolveContexts()) {
+            return views;
+        }
+        Map<String, String> contexts = contextStore.resolve(views.stream().map(MessageView::contextHash).toList());
+        if (contexts.isEmpty()) {
+            return views;
+        }
+        return views.stream()
+                .map(view -> view.contextHash() == null ? view : view.withContext(contexts.get(view.contextHash())))
+                .toList();
+    }
+
+    @Override
+    public void requireSession(UUID sessionId) {
+        requireReadable(sessionId);
+    }
+
+    /**
+     * Whether a session the cached metadata still shows as hot has been archived since, by this or another instance:
+     * archiving deletes the hot rows, so a stale entry would serve an empty history for up to the cache TTL. Only
+     * asked when a hot read comes back empty, from the table rather than the cache; a stale entry is dropped.
+     */
+    private boolean archivedSince(UUID sessionId) {
+        boolean archived = sessionRepo.findMetadataById(sessionId).map(SessionMetadata::archived).orElse(false);
+        if (archived) {
+            log.debug("Session id={} was archived after its metadata was cached", sessionId);
+            sessionCache.evictLocal(sessionId);
+        }
+        return archived;
+    }
+
+    /**
+     * Read guard for the message endpoints: a missing or soft-deleted session is a 404 answered from the metadata
+     * cache, before any query touches its messages.
+     */
+    private SessionMetadata requireReadable(UUID sessionId) {
+        return sessionCache.get(sessionId).filter(metadata -> !metadata.deleted())
+                .orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
+    }
+
+    @Override
+    public ContextView getContext(String hash) {
+        String context = contextStore.resolve(List.of(hash)).get(hash);
+        if (context == null) {
+            throw new CustomGlobalException(ErrorCode.CONTEXT_NOT_FOUND);
+        }
+        return new ContextView(hash, context);
+    }
+
+    @Override
+    public CursorPage<SearchHit> searchMessages(String userId, String query, String after, int size) {
+        log.debug("Searching messages for userId={} after={} size={}", userId, after, size);
+
+        if (query == null || query.isBlank() || query.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new CustomGlobalException(ErrorCode.INVALID_SEARCH_QUERY);
+        }
+
+        int pageSize = Math.min(Math.max(1, size), MAX_SEARCH_PAGE_SIZE);
+        SearchCursor cursor = after == null ? SearchCursor.FIRST : SearchCursor.decode(after);
+        // Fetch one extra row to learn whether another page exists
+        List<MessageSearchRow> rows = messageRepo.search(userId, query, cursor.rank(), cursor.messageId(), pageSize + 1);
+
+        List<SearchHit> content = rows.stream()
+                .limit(pageSize)
+                .map(ChatMapper::toSearchHit)
+                .toList();
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            SearchHit last = content.get(content.size() - 1);
+            nextCursor = new SearchCursor(last.rank(), last.messageId()).encode();
+        }
+        return new CursorPage<>(content, pageSize, nextCursor, null);
+    }
+
+    /**
+     * Messages cannot predate their session. For time-ordered (v7) session ids that bound is encoded in the id itself,
+     * which lets Postgres skip message partitions older than the session without a lookup.
+     */
+    private static LocalDateTime earliestMessageTime(UUID sessionId) {
+        if (sessionId.version() != 7) {
+            return NO_LOWER_BOUND;
+        }
+        Instant created = Instant.ofEpochMilli(UuidV7.timestamp(sessionId));
+        return LocalDateTime.ofInstant(created.minus(SESSION_CLOCK_SKEW), ZoneId.systemDefault());
     }
 }
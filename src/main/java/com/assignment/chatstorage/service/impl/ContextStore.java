@@ -0,0 +1,150 @@
+package com.assignment.chatstorage.service.impl;
+
+import com.assignment.chatstorage.cache.ContextHashCache;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-addressed store for message context payloads ({@code tbl_chat_contexts}). A payload is keyed by the hex
+ * SHA-256 of its UTF-8 bytes and never changed, so messages carry only the hash. Payloads no message references any
+ * more are deleted by the retention and purge jobs once older than {@link #ORPHAN_GRACE}; storing a payload again
+ * refreshes its {@code created_at} when that is older than {@link ContextHashCache#REMEMBER_FOR}. The refresh locks the
+ * row, so a sweep racing the transaction that reuses a payload waits for it and then finds the row too young to delete.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContextStore {
+
+    /** Payloads at least this large are stored gzip-compressed, if that makes them smaller */
+    static final int COMPRESS_MIN_BYTES = 1024;
+
+    /**
+     * Payloads written or refreshed this recently are kept even when unreferenced: twice the time a hash is remembered
+     * without touching the row, plus clock skew between nodes
+     */
+    public static final Duration ORPHAN_GRACE = ContextHashCache.REMEMBER_FOR.multipliedBy(2).plusHours(1);
+
+    private static final String INSERT_SQL = """
+            insert into tbl_chat_contexts as c (hash, payload, compressed, size_bytes, created_at)
+            values (?, ?, ?, ?, ?)
+            on conflict (hash) do update set created_at = excluded.created_at
+            where c.created_at < ?
+            """;
+    private static final String RESOLVE_SQL = "select hash, payload, compressed from tbl_chat_contexts where hash = any(?)";
+
+    private final JdbcTemplate jdbc;
+    private final ContextHashCache knownHashes;
+
+    public static String hash(String payload) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Stores every payload not known to exist yet and returns the hash of each. Joins the caller's transaction, so
+     * the rows are in place before the messages referencing them are flushed.
+     *
+     * @return payload to hash; null payloads are skipped
+     */
+    public Map<String, String> putAll(Collection<String> payloads) {
+        Map<String, String> hashes = new HashMap<>();
+        LocalDateTime writtenAt = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(writtenAt);
+        Timestamp refreshBefore = Timestamp.valueOf(writtenAt.minus(ContextHashCache.REMEMBER_FOR));
+        List<Object[]> rows = new ArrayList<>();
+        for (String payload : payloads) {
+            if (payload == null || hashes.containsKey(payload)) {
+                continue;
+            }
+            String hash = hash(payload);
+            hashes.put(payload, hash);
+            if (!knownHashes.contains(hash)) {
+                rows.add(row(hash, payload, now, refreshBefore));
+            }
+        }
+        if (!rows.isEmpty()) {
+            // A fixed insert order keeps two batches sharing payloads from deadlocking on each other
+            rows.sort(Comparator.comparing(row -> (String) row[0]));
+            jdbc.batchUpdate(INSERT_SQL, rows);
+            rows.forEach(row -> knownHashes.remember((String) row[0]));
+            log.debug("Stored up to {} new context payloads", rows.size());
+        }
+        return hashes;
+    }
+
+    /**
+     * @return hash to payload for every hash found; null and unknown hashes are absent
+     */
+    public Map<String, String> resolve(Collection<String> hashes) {
+        Set<String> distinct = new HashSet<>(hashes);
+        distinct.remove(null);
+        Map<String, String> payloads = new HashMap<>();
+        if (distinct.isEmpty()) {
+            return payloads;
+        }
+        jdbc.query(RESOLVE_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", distinct.toArray())), rs -> {
+            byte[] stored = rs.getBytes("payload");
+            byte[] utf8 = rs.getBoolean("compressed") ? gunzip(stored) : stored;
+            payloads.put(rs.getString("hash"), new String(utf8, StandardCharsets.UTF_8));
+        });
+        return payloads;
+    }
+
+    private static Object[] row(String hash, String payload, Timestamp now, Timestamp refreshBefore) {
+        byte[] utf8 = payload.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= COMPRESS_MIN_BYTES) {
+            byte[] gzipped = gzip(utf8);
+            if (gzipped.length < utf8.length) {
+                return new Object[] {hash, gzipped, true, utf8.length, now, refreshBefore};
+            }
+        }
+        return new Object[] {hash, utf8, false, utf8.length, now, refreshBefore};
+    }
+
+    private static byte[] gzip(byte[] data) {
+        var bytes = new ByteArrayOutputStream(data.length / 2);
+        try (var out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
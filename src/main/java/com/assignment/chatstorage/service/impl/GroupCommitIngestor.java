@@ -0,0 +1,173 @@
+package com.assignment.chatstorage.service.impl;
+
+import com.assignment.chatstorage.config.IngestProperties;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SessionMessageCreate;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind queue for {@code addMessage}. Callers enqueue and block until the group their message was flushed in
+ * has committed; a single writer thread drains the queue and hands each group to {@link MessageWriter} so many
+ * messages share one transaction and one commit.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ingest", name = "group-commit-enabled", havingValue = "true")
+public class GroupCommitIngestor {
+
+    private final MessageWriter writer;
+    private final IngestProperties props;
+    private final BlockingQueue<Pending> queue;
+
+    private final Counter rejected;
+    private final DistributionSummary flushSize;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public GroupCommitIngestor(MessageWriter writer, IngestProperties props, MeterRegistry registry) {
+        this.writer = writer;
+        this.props = props;
+        this.queue = new ArrayBlockingQueue<>(props.getQueueCapacity());
+
+        Gauge.builder("chat.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for a group commit")
+                .register(registry);
+        this.rejected = Counter.builder("chat.ingest.rejected")
+                .description("Messages rejected because the ingest queue was full")
+                .register(registry);
+        this.flushSize = DistributionSummary.builder("chat.ingest.flush.size")
+                .description("Messages written per group commit")
+                .register(registry);
+        this.flushTimer = Timer.builder("chat.ingest.flush.duration")
+                .description("Time spent writing and committing one group")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::drainLoop, "group-commit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Group-commit ingest started capacity={} maxBatchSize={} maxDelayMillis={}",
+                props.getQueueCapacity(), props.getMaxBatchSize(), props.getMaxDelayMillis());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(props.getCommitTimeoutMillis());
+    }
+
+    public MessageView submit(UUID sessionId, MessageCreate req) {
+        Pending pending = new Pending(new SessionMessageCreate(sessionId, req), new CompletableFuture<>());
+        try {
+            if (!running || !queue.offer(pending, props.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new CustomGlobalException(ErrorCode.INGEST_QUEUE_FULL);
+            }
+            return pending.result().get(props.getCommitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            // The group may still commit later; the caller is told the outcome is unknown rather than that it failed
+            throw new CustomGlobalException(ErrorCode.INGEST_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CustomGlobalException(ErrorCode.INGEST_TIMEOUT);
+        }
+    }
+
+    private void drainLoop() {
+        List<Pending> group = new ArrayList<>(props.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+                flush(group);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.error("Group-commit writer failed", ex);
+                group.forEach(p -> p.result().completeExceptionally(ex));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void collect(List<Pending> group) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(props.getMaxDelayMillis());
+        while (group.size() < props.getMaxBatchSize()) {
+            queue.drainTo(group, props.getMaxBatchSize() - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= props.getMaxBatchSize() || remaining <= 0) {
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void flush(List<Pending> group) {
+        flushSize.record(group.size());
+        try {
+            List<MessageView> views = flushTimer.record(() -> writer.write(group.stream().map(Pending::request).toList()));
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result().complete(views.get(i));
+            }
+        } catch (RuntimeException ex) {
+            if (group.size() == 1) {
+                group.get(0).result().completeExceptionally(ex);
+                return;
+            }
+            // One bad message (e.g. an unknown session) must not fail its neighbours: retry each on its own
+            log.warn("Group commit of {} messages failed, retrying individually: {}", group.size(), ex.getMessage());
+            for (Pending pending : group) {
+                try {
+                    pending.result().complete(writer.write(List.of(pending.request())).get(0));
+                } catch (RuntimeException single) {
+                    pending.result().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private record Pending(SessionMessageCreate request, CompletableFuture<MessageView> result) {
+
+    }
+}
@@ -0,0 +1,103 @@
+package com.assignment.chatstorage.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary encoding of a session's messages for the archive tier: a version byte, the message count, then per message
+ * the id, timestamps as epoch microseconds and length-prefixed UTF-8 strings, all gzip-compressed. Chat text repeats
+ * a lot within a session, so the blob is typically several times smaller than the rows and their index entries.
+ */
+public final class MessageArchiveCodec {
+
+    private static final byte VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    public record ArchivedMessage(UUID id, String createdBy, String content, String context, LocalDateTime createdAt,
+            LocalDateTime updatedAt) {
+
+    }
+
+    private MessageArchiveCodec() {
+    }
+
+    public static byte[] encode(List<ArchivedMessage> messages) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(VERSION);
+            out.writeInt(messages.size());
+            for (ArchivedMessage m : messages) {
+                out.writeLong(m.id().getMostSignificantBits());
+                out.writeLong(m.id().getLeastSignificantBits());
+                out.writeLong(toMicros(m.createdAt()));
+                out.writeLong(toMicros(m.updatedAt()));
+                writeString(out, m.createdBy());
+                writeString(out, m.content());
+                writeString(out, m.context());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<ArchivedMessage> decode(byte[] payload) {
+        try (var in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported message archive version " + version);
+            }
+            int count = in.readInt();
+            List<ArchivedMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID id = new UUID(in.readLong(), in.readLong());
+                LocalDateTime createdAt = fromMicros(in.readLong());
+                LocalDateTime updatedAt = fromMicros(in.readLong());
+                messages.add(new ArchivedMessage(id, readString(in), readString(in), readString(in), createdAt, updatedAt));
+            }
+            return messages;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time == null ? NULL_TIME : ChronoUnit.MICROS.between(EPOCH, time);
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return micros == NULL_TIME ? null : EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
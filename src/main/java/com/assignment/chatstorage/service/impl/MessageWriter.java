@@ -0,0 +1,113 @@
+package com.assignment.chatstorage.service.impl;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadata;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.datasource.ReadYourWrites;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SessionMessageCreate;
+import com.assignment.chatstorage.entity.ChatMessage;
+import com.assignment.chatstorage.entity.ChatSession;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import com.assignment.chatstorage.mapper.ChatMapper;
+import com.assignment.chatstorage.repository.ChatMessageRepository;
+import com.assignment.chatstorage.repository.ChatSessionRepository;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Single write path for chat messages. Every caller (per-request adds, batch endpoints and the group-commit
+ * queue) ends up here, so each call is exactly one transaction and one commit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageWriter {
+
+    private final ChatSessionRepository sessionRepo;
+    private final ChatMessageRepository messageRepo;
+    private final SessionMetadataCache sessionCache;
+    private final SessionListCache sessionListCache;
+    private final SessionArchiver sessionArchiver;
+    private final ContextStore contextStore;
+    private final ReadYourWrites readYourWrites;
+
+    @Transactional
+    public List<MessageView> write(UUID sessionId, List<MessageCreate> reqs) {
+        SessionMetadata metadata = sessionCache.get(sessionId).filter(known -> !known.deleted())
+                .orElseThrow(() -> new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND));
+        if (metadata.archived()) {
+            // A new message makes the session hot again
+            sessionArchiver.restore(sessionId);
+        }
+        // Existence is known from the cache; a reference is enough for the foreign key and costs no query
+        ChatSession session = sessionRepo.getReferenceById(sessionId);
+        List<ChatMessage> messages = reqs.stream().map(req -> ChatMapper.toChatEntity(req, session)).toList();
+        storeContexts(messages);
+        // Ids are assigned in @PrePersist, so the inserts are queued and flushed as JDBC batches on commit
+        List<MessageView> views = messageRepo.saveAll(messages).stream().map(ChatMapper::toMessageView).toList();
+        recordActivity(messages);
+        sessionListCache.invalidate(metadata.userId());
+        readYourWrites.written(sessionId);
+        readYourWrites.written(metadata.userId());
+        log.debug("Saved {} messages for session id={}", views.size(), sessionId);
+        return views;
+    }
+
+    @Transactional
+    public List<MessageView> write(List<SessionMessageCreate> reqs) {
+        Set<UUID> sessionIds = reqs.stream().map(SessionMessageCreate::sessionId).collect(Collectors.toSet());
+        Map<UUID, SessionMetadata> known = sessionCache.getAll(sessionIds);
+        // A deleted session takes no new messages; SessionPurgeJob is about to remove it
+        if (known.size() != sessionIds.size() || known.values().stream().anyMatch(SessionMetadata::deleted)) {
+            throw new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND);
+        }
+        known.values().stream().filter(SessionMetadata::archived).forEach(metadata -> sessionArchiver.restore(metadata.id()));
+        Map<UUID, ChatSession> sessions = sessionIds.stream()
+                .collect(Collectors.toMap(Function.identity(), sessionRepo::getReferenceById));
+        List<ChatMessage> messages = reqs.stream()
+                .map(req -> ChatMapper.toChatEntity(req.message(), sessions.get(req.sessionId())))
+                .toList();
+        storeContexts(messages);
+        List<MessageView> views = messageRepo.saveAll(messages).stream().map(ChatMapper::toMessageView).toList();
+        recordActivity(messages);
+        known.values().stream().map(SessionMetadata::userId).distinct().forEach(sessionListCache::invalidate);
+        sessionIds.forEach(readYourWrites::written);
+        known.values().stream().map(SessionMetadata::userId).distinct().forEach(readYourWrites::written);
+        log.debug("Saved {} messages across {} sessions", views.size(), sessionIds.size());
+        return views;
+    }
+
+    /**
+     * Adds the saved messages to their sessions' counters. Sessions are updated in id order so two concurrent
+     * multi-session batches take the row locks in the same order and cannot deadlock.
+     */
+    private void recordActivity(List<ChatMessage> messages) {
+        Map<UUID, List<ChatMessage>> bySession = messages.stream()
+                .collect(Collectors.groupingBy(message -> message.getSession().getId(), TreeMap::new, Collectors.toList()));
+        bySession.forEach((sessionId, batch) -> sessionRepo.recordActivity(sessionId, batch.size(),
+                batch.stream().mapToLong(message -> message.getContent().getBytes(StandardCharsets.UTF_8).length).sum(),
+                // createdAt is stamped by the auditing listener when the row is persisted
+                batch.stream().map(ChatMessage::getCreatedAt).max(Comparator.naturalOrder()).orElseThrow()));
+    }
+
+    /** Moves each context into the content-addressed store; the message keeps the payload for its response view */
+    private void storeContexts(List<ChatMessage> messages) {
+        Map<String, String> hashes = contextStore.putAll(messages.stream().map(ChatMessage::getContext).toList());
+        messages.stream().filter(message -> message.getContext() != null)
+                .forEach(message -> message.setContextHash(hashes.get(message.getContext())));
+    }
+}
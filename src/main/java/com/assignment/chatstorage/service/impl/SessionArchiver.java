@@ -0,0 +1,284 @@
+package com.assignment.chatstorage.service.impl;
+
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.config.ArchiveProperties;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.service.impl.MessageArchiveCodec.ArchivedMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Moves the messages of a session between the hot table and the compressed archive tier. Both directions lock the
+ * session row first: that serialises archive against restore, and concurrent inserts wait on the row through their
+ * foreign key check. A message that still lands in the hot table of an archived session (written by an instance with
+ * stale session metadata) is merged into reads by the caller and picked up by the next restore. Archived messages have
+ * no content_tsv, so full-text search does not see them until the session is restored.
+ */
+@Slf4j
+@Component
+public class SessionArchiver {
+
+    private static final String ARCHIVED_SQL = "select archived from tbl_chat_sessions where id = ?";
+    private static final String LOCK_SESSION_SQL = ARCHIVED_SQL + " for update";
+    private static final String HOT_MESSAGES_SQL = """
+            select id, created_by, content, context_hash, created_at, updated_at, pg_column_size(m.*) as row_bytes
+            from tbl_chat_messages m
+            where session_id = ?
+            order by created_at, id
+            """;
+    private static final String INSERT_MESSAGE_SQL = """
+            insert into tbl_chat_messages (id, session_id, created_by, content, context_hash, created_at, updated_at, is_active, is_deleted)
+            values (?, ?, ?, ?, ?, ?, ?, true, false)
+            on conflict do nothing
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final SessionMetadataCache sessionCache;
+    private final ContextStore contextStore;
+    private final Counter archivedSessions;
+    private final Counter archivedMessages;
+    private final Counter hotBytes;
+    private final Counter archiveBytes;
+    private final Counter restoredSessions;
+    private final Counter expiredMessages;
+    private final Timer readTimer;
+    private final Cache<UUID, List<MessageView>> decoded;
+
+    public SessionArchiver(JdbcTemplate jdbc, SessionMetadataCache sessionCache, ContextStore contextStore, ArchiveProperties props,
+            MeterRegistry registry) {
+        this.jdbc = jdbc;
+        this.sessionCache = sessionCache;
+        this.contextStore = contextStore;
+        // Paging through an archived session would otherwise decompress the whole archive once per page
+        this.decoded = Caffeine.newBuilder()
+                .maximumWeight(props.getReadCacheSize().toBytes())
+                .<UUID, List<MessageView>>weigher((id, messages) -> weigh(messages))
+                .expireAfterAccess(props.getReadCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, decoded, "sessionArchive");
+        this.archivedSessions = Counter.builder("chat.archive.sessions")
+                .description("Sessions moved to the archive tier")
+                .register(registry);
+        this.archivedMessages = Counter.builder("chat.archive.messages")
+                .description("Messages moved to the archive tier")
+                .register(registry);
+        this.hotBytes = Counter.builder("chat.archive.hot.bytes")
+                .description("On-disk size of the message rows moved to the archive tier")
+                .baseUnit("bytes")
+                .register(registry);
+        this.archiveBytes = Counter.builder("chat.archive.stored.bytes")
+                .description("Compressed size of the archives written for them")
+                .baseUnit("bytes")
+                .register(registry);
+        this.restoredSessions = Counter.builder("chat.archive.restored")
+                .description("Archived sessions moved back to the hot tier")
+                .register(registry);
+        this.expiredMessages = Counter.builder("chat.archive.expired")
+                .description("Archived messages removed past their retention TTL")
+                .register(registry);
+        this.readTimer = Timer.builder("chat.archive.read")
+                .description("Time to load and decompress an archived session on a cache miss")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    /**
+     * Archives the session if it is still hot and has no message newer than {@code cutoff}.
+     *
+     * @return the number of messages archived, 0 when the session was skipped
+     */
+    @Transactional
+    public int archive(UUID sessionId, LocalDateTime cutoff) {
+        List<Boolean> archived = jdbc.queryForList(LOCK_SESSION_SQL, Boolean.class, sessionId);
+        if (archived.isEmpty() || Boolean.TRUE.equals(archived.get(0))) {
+            return 0;
+        }
+
+        long[] rowBytes = {0};
+        List<HotRow> rows = jdbc.query(HOT_MESSAGES_SQL, (rs, i) -> {
+            rowBytes[0] += rs.getLong("row_bytes");
+            return new HotRow(rs.getObject("id", UUID.class), rs.getString("created_by"), rs.getString("content"),
+                    rs.getString("context_hash"), rs.getObject("created_at", LocalDateTime.class),
+                    rs.getObject("updated_at", LocalDateTime.class));
+        }, sessionId);
+        // Re-checked under the lock: a message may have arrived since the session was selected
+        if (rows.isEmpty() || rows.get(rows.size() - 1).createdAt().isAfter(cutoff)) {
+            return 0;
+        }
+        // Archives are self-contained: contexts are inlined, and gzip folds the ones repeated across turns
+        Map<String, String> contexts = contextStore.resolve(rows.stream().map(HotRow::contextHash).toList());
+        List<ArchivedMessage> messages = rows.stream()
+                .map(r -> new ArchivedMessage(r.id(), r.createdBy(), r.content(), contexts.get(r.contextHash()), r.createdAt(),
+                        r.updatedAt()))
+                .toList();
+
+        byte[] payload = MessageArchiveCodec.encode(messages);
+        jdbc.update("""
+                insert into tbl_chat_session_archives (session_id, message_count, hot_bytes, payload, archived_at, oldest_message_at)
+                values (?, ?, ?, ?, ?, ?)
+                """, sessionId, messages.size(), rowBytes[0], payload, Timestamp.valueOf(LocalDateTime.now()),
+                timestamp(rows.get(0).createdAt()));
+        jdbc.update("delete from tbl_chat_messages where session_id = ?", sessionId);
+        jdbc.update("update tbl_chat_sessions set archived = true where id = ?", sessionId);
+        sessionCache.invalidate(sessionId);
+        decoded.invalidate(sessionId);
+
+        archivedSessions.increment();
+        archivedMessages.increment(messages.size());
+        hotBytes.increment(rowBytes[0]);
+        archiveBytes.increment(payload.length);
+        log.debug("Archived session id={} messages={} hotBytes={} archiveBytes={}", sessionId, messages.size(), rowBytes[0],
+                payload.length);
+        return messages.size();
+    }
+
+    /**
+     * Moves an archived session's messages back into the hot table. Safe to call for a session that is not (or no
+     * longer) archived.
+     */
+    @Transactional
+    public void restore(UUID sessionId) {
+        List<Boolean> archived = jdbc.queryForList(LOCK_SESSION_SQL, Boolean.class, sessionId);
+        if (archived.isEmpty() || !Boolean.TRUE.equals(archived.get(0))) {
+            return;
+        }
+
+        List<byte[]> payload = jdbc.queryForList("select payload from tbl_chat_session_archives where session_id = ?",
+                byte[].class, sessionId);
+        if (!payload.isEmpty()) {
+            List<ArchivedMessage> messages = MessageArchiveCodec.decode(payload.get(0));
+            Map<String, String> hashes = contextStore.putAll(messages.stream().map(ArchivedMessage::context).toList());
+            List<Object[]> rows = messages.stream()
+                    .map(m -> new Object[] {m.id(), sessionId, m.createdBy(), m.content(), hashes.get(m.context()),
+                            timestamp(m.createdAt()), timestamp(m.updatedAt())})
+                    .toList();
+            jdbc.batchUpdate(INSERT_MESSAGE_SQL, rows);
+            jdbc.update("delete from tbl_chat_session_archives where session_id = ?", sessionId);
+            log.debug("Restored {} archived messages of session id={}", rows.size(), sessionId);
+        }
+        jdbc.update("update tbl_chat_sessions set archived = false where id = ?", sessionId);
+        sessionCache.invalidate(sessionId);
+        decoded.invalidate(sessionId);
+        restoredSessions.increment();
+    }
+
+    /**
+     * Removes the archived messages created before {@code cutoff}: the archive is decoded, trimmed and written back, and
+     * the session counters lose what was removed. An archive left empty is deleted and the session is hot again (with no
+     * messages). Messages without a creation time are kept. A dry run only counts.
+     *
+     * @return the number of archived messages created before {@code cutoff}
+     */
+    @Transactional
+    public int expireBefore(UUID sessionId, LocalDateTime cutoff, boolean dryRun) {
+        List<Boolean> archived = jdbc.queryForList(dryRun ? ARCHIVED_SQL : LOCK_SESSION_SQL,
+                Boolean.class, sessionId);
+        if (archived.isEmpty() || !Boolean.TRUE.equals(archived.get(0))) {
+            return 0;
+        }
+        List<Map<String, Object>> archive = jdbc.queryForList(
+                "select payload, hot_bytes from tbl_chat_session_archives where session_id = ?", sessionId);
+        if (archive.isEmpty()) {
+            return 0;
+        }
+        List<ArchivedMessage> messages = MessageArchiveCodec.decode((byte[]) archive.get(0).get("payload"));
+        List<ArchivedMessage> kept = messages.stream()
+                .filter(m -> m.createdAt() == null || !m.createdAt().isBefore(cutoff))
+                .toList();
+        int expired = messages.size() - kept.size();
+        if (dryRun) {
+            return expired;
+        }
+        if (expired == 0) {
+            // Archived before the column existed; record the oldest message so later runs can skip the archive
+            jdbc.update("update tbl_chat_session_archives set oldest_message_at = ? where session_id = ?",
+                    timestamp(oldest(kept)), sessionId);
+            return 0;
+        }
+
+        long expiredBytes = 0;
+        for (ArchivedMessage m : messages) {
+            if (m.createdAt() != null && m.createdAt().isBefore(cutoff)) {
+                expiredBytes += m.content() == null ? 0 : m.content().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        if (kept.isEmpty()) {
+            jdbc.update("delete from tbl_chat_session_archives where session_id = ?", sessionId);
+            jdbc.update("update tbl_chat_sessions set archived = false where id = ?", sessionId);
+        } else {
+            long hotBytes = ((Number) archive.get(0).get("hot_bytes")).longValue() * kept.size() / messages.size();
+            jdbc.update("""
+                    update tbl_chat_session_archives set payload = ?, message_count = ?, hot_bytes = ?, oldest_message_at = ?
+                    where session_id = ?
+                    """, MessageArchiveCodec.encode(kept), kept.size(), hotBytes, timestamp(oldest(kept)), sessionId);
+        }
+        jdbc.update("""
+                update tbl_chat_sessions
+                set message_count = greatest(message_count - ?, 0), content_bytes = greatest(content_bytes - ?, 0)
+                where id = ?
+                """, expired, expiredBytes, sessionId);
+        sessionCache.invalidate(sessionId);
+        decoded.invalidate(sessionId);
+        expiredMessages.increment(expired);
+        log.debug("Expired {} archived messages of session id={} before {}", expired, sessionId, cutoff);
+        return expired;
+    }
+
+    private static LocalDateTime oldest(List<ArchivedMessage> messages) {
+        return messages.stream().map(ArchivedMessage::createdAt).filter(Objects::nonNull).min(LocalDateTime::compareTo).orElse(null);
+    }
+
+    /**
+     * Messages held in the archive of a session, in (createdAt, id) order. Empty if the session has no archive.
+     */
+    public List<MessageView> read(UUID sessionId) {
+        return decoded.get(sessionId, this::load);
+    }
+
+    private List<MessageView> load(UUID sessionId) {
+        return readTimer.record(() -> {
+            List<byte[]> payload = jdbc.queryForList("select payload from tbl_chat_session_archives where session_id = ?",
+                    byte[].class, sessionId);
+            if (payload.isEmpty()) {
+                return List.<MessageView>of();
+            }
+            return MessageArchiveCodec.decode(payload.get(0)).stream()
+                    .map(m -> new MessageView(m.id(), sessionId, m.createdBy(), m.content(), m.context(),
+                            m.context() == null ? null : ContextStore.hash(m.context()), m.createdAt()))
+                    .toList();
+        });
+    }
+
+    private static int weigh(List<MessageView> messages) {
+        long chars = 0;
+        for (MessageView m : messages) {
+            chars += 64 + m.content().length() + (m.context() == null ? 0 : m.context().length());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars * 2);
+    }
+
+    private record HotRow(UUID id, String createdBy, String content, String contextHash, LocalDateTime createdAt,
+            LocalDateTime updatedAt) {
+
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+}
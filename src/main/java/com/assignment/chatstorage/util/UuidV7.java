@@ -0,0 +1,50 @@
+package com.assignment.chatstorage.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUID version 7 (RFC 9562): 48-bit Unix millisecond timestamp, 12-bit sequence, 62 random bits.
+ * <p>
+ * The sequence makes ids strictly increasing within this JVM, also when many are created in the same millisecond
+ * or the wall clock steps backwards: the generator then keeps counting from the last issued value, borrowing from
+ * the next millisecond if the 12-bit sequence overflows. New keys therefore land on the right-most B-tree page
+ * instead of at random positions across the primary-key index.
+ */
+public final class UuidV7 {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long VARIANT_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    /** Last issued (timestamp << 12 | sequence). */
+    private static final AtomicLong STATE = new AtomicLong();
+
+    private UuidV7() {}
+
+    public static UUID next() {
+        long now = System.currentTimeMillis();
+        long prev;
+        long next;
+        do {
+            prev = STATE.get();
+            if (now > (prev >>> SEQUENCE_BITS)) {
+                // New millisecond: start the sequence at a random point in the lower half to leave room for increments
+                next = (now << SEQUENCE_BITS) | ThreadLocalRandom.current().nextLong(1L << (SEQUENCE_BITS - 1));
+            } else {
+                next = prev + 1;
+            }
+        } while (!STATE.compareAndSet(prev, next));
+
+        long msb = ((next >>> SEQUENCE_BITS) << 16) | VERSION | (next & ((1L << SEQUENCE_BITS) - 1));
+        long lsb = VARIANT | (ThreadLocalRandom.current().nextLong() & VARIANT_MASK);
+        return new UUID(msb, lsb);
+    }
+
+    /** Unix epoch milliseconds encoded in a version 7 id. */
+    public static long timestamp(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
@@ -1,18 +1,39 @@
 package com.assignment.chatstorage.web;
 
+import com.assignment.chatstorage.dto.ContextMode;
+import com.assignment.chatstorage.dto.CursorPage;
 import com.assignment.chatstorage.dto.Dtos;
+import com.assignment.chatstorage.dto.Dtos.ContextView;
+import com.assignment.chatstorage.dto.FieldSelection;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.MessageViewMode;
 import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SearchHit;
 import com.assignment.chatstorage.dto.Dtos.SessionFavorite;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
 import com.assignment.chatstorage.dto.PageResponse;
+import com.assignment.chatstorage.dto.Versioned;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
 import com.assignment.chatstorage.service.ChatService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,9 +41,11 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -32,6 +55,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class ChatController {
 
     private final ChatService service;
+    private final ObjectMapper objectMapper;
 
     @PostMapping()
     @Operation(summary = "Create chat session")
@@ -42,33 +66,62 @@ public class ChatController {
 
     @GetMapping()
     @Operation(summary = "List chat sessions")
-    public List<SessionView> list(@RequestParam String userId, @RequestParam(required = false) Boolean favorite) {
+    public List<?> list(@RequestParam String userId, @RequestParam(required = false) Boolean favorite,
+            @RequestParam(required = false) String fields) {
         log.info("getting list of sessions userId={} favorite={}", userId, favorite);
-        return service.listSessions(userId, favorite);
+        FieldSelection selection = FieldSelection.parse(SessionView.class, fields);
+        return selection.apply(service.listSessions(userId, favorite));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Full-text search across a user's messages, best matches first",
+            description = "Only hot messages are searched: sessions moved to the archive tier return no hits until a new "
+                    + "message restores them. Snippets are HTML-escaped, with matches wrapped in <mark> tags.")
+    public CursorPage<SearchHit> search(@RequestParam String userId, @RequestParam String q,
+            @RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int size) {
+        log.debug("search messages userId={} after={} size={}", userId, after, size);
+        return service.searchMessages(userId, q, after, size);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get chat session; the ETag is its version for If-Match")
+    public ResponseEntity<SessionView> get(@PathVariable UUID id) {
+        log.debug("get session id={}", id);
+        return withETag(service.getSession(id));
     }
 
     @PatchMapping("/{id}/rename")
     @Operation(summary = "Rename chat session")
-    public SessionView rename(@PathVariable UUID id, @Valid @RequestBody Dtos.SessionRename req) {
+    public ResponseEntity<SessionView> rename(@PathVariable UUID id, @Valid @RequestBody Dtos.SessionRename req,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("rename session id={}", id);
-        return service.rename(id, req);
+        return withETag(service.rename(id, req, expectedVersion(ifMatch)));
     }
 
     @PatchMapping("/{id}/favorite")
     @Operation(summary = "Mark or unmark favorite")
-    public SessionView markFavorite(@PathVariable UUID id, @RequestBody SessionFavorite req) {
+    public ResponseEntity<SessionView> markFavorite(@PathVariable UUID id, @RequestBody SessionFavorite req,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("favorite session id={} favorite={}", id, req.isFavorite());
-        return service.favorite(id, req);
+        return withETag(service.favorite(id, req, expectedVersion(ifMatch)));
     }
 
     @DeleteMapping("/{id}")
     @Operation(summary = "Soft delete chat session")
-    public ResponseEntity<Void> delete(@PathVariable UUID id) {
+    public ResponseEntity<Void> delete(@PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("Delete session id={}", id);
-        service.deleteSession(id);
+        service.deleteSession(id, expectedVersion(ifMatch));
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/bulk")
+    @Operation(summary = "Delete, favorite or unfavorite up to 100 sessions in one call, with a result per id")
+    public Dtos.SessionBulkResult bulk(@Valid @RequestBody Dtos.SessionBulkRequest req) {
+        log.info("bulk {} of {} sessions", req.operation(), req.ids().size());
+        return service.bulkUpdate(req);
+    }
+
     @PostMapping("/{id}/messages")
     @Operation(summary = "Add message to a session")
     public MessageView addMessage(@PathVariable UUID id, @Valid @RequestBody Dtos.MessageCreate req) {
@@ -76,14 +129,121 @@ public class ChatController {
         return service.addMessage(id, req);
     }
 
-    @GetMapping("/{id}/messages")
-    @Operation(summary = "List messages of a session")
-    public PageResponse<MessageView> listMessages(@PathVariable UUID id, @RequestParam(defaultValue = "1") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        log.debug("list messages session id={} page={} size={}", id, page, size);
-        var messages = service.listMessages(id, page, size);
-        return new PageResponse<>(messages.getContent(), messages.getNumber(), messages.getSize(),
+    @PostMapping("/{id}/messages/batch")
+    @Operation(summary = "Add a batch of messages to a session")
+    public List<MessageView> addMessages(@PathVariable UUID id, @Valid @RequestBody Dtos.MessageBatchCreate req) {
+        log.info("add {} messages to session id={}", req.messages().size(), id);
+        return service.addMessages(id, req.messages());
+    }
+
+    @PostMapping("/messages/batch")
+    @Operation(summary = "Add a batch of messages across sessions")
+    public List<MessageView> addMessagesAcrossSessions(@Valid @RequestBody Dtos.SessionMessageBatchCreate req) {
+        log.info("add {} messages across sessions", req.messages().size());
+        return service.addMessages(req.messages());
+    }
+
+    /*
+     * Offset paging stays the default shape of GET /{id}/messages, as it was before cursors existed; a request switches
+     * to cursor paging by carrying a cursor (after, before) or, for the first page, the cursor flag.
+     */
+    @GetMapping(value = "/{id}/messages", params = {"!after", "!before", "!cursor"})
+    @Operation(summary = "List messages of a session (offset paging, the default)")
+    public PageResponse<?> listMessages(@PathVariable UUID id, @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int size, @RequestParam(name = "context", defaultValue = "FULL") ContextMode contextMode,
+            @RequestParam(defaultValue = "FULL") MessageViewMode view, @RequestParam(required = false) String fields) {
+        log.debug("list messages session id={} page={} size={} view={} fields={}", id, page, size, view, fields);
+        FieldSelection selection = FieldSelection.parse(MessageView.class, fields);
+        var messages = service.listMessages(id, page, size, new MessageListOptions(contextMode, view, selection));
+        return new PageResponse<>(selection.apply(messages.getContent()), messages.getNumber(), messages.getSize(),
                 messages.getTotalElements(),
                 messages.getTotalPages());
     }
+
+    @GetMapping("/{id}/messages")
+    @Operation(summary = "List messages of a session (cursor paging, with after, before or cursor=true)")
+    public CursorPage<?> listMessagesByCursor(@PathVariable UUID id, @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before, @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "context", defaultValue = "FULL") ContextMode contextMode,
+            @RequestParam(defaultValue = "FULL") MessageViewMode view, @RequestParam(required = false) String fields) {
+        log.debug("list messages session id={} after={} before={} size={} view={} fields={}", id, after, before, size, view, fields);
+        FieldSelection selection = FieldSelection.parse(MessageView.class, fields);
+        var messages = service.listMessages(id, after, before, size, new MessageListOptions(contextMode, view, selection));
+        return new CursorPage<>(selection.apply(messages.content()), messages.size(), messages.nextCursor(), messages.prevCursor());
+    }
+
+    @GetMapping("/{id}/messages/{messageId}")
+    @Operation(summary = "Get one message with its full content and context")
+    public MessageView getMessage(@PathVariable UUID id, @PathVariable UUID messageId) {
+        log.debug("get message id={} session id={}", messageId, id);
+        return service.getMessage(id, messageId);
+    }
+
+    @GetMapping("/contexts/{hash}")
+    @Operation(summary = "Fetch a RAG context payload by its hash")
+    public ResponseEntity<ContextView> context(@PathVariable String hash) {
+        log.debug("get context hash={}", hash);
+        // Content-addressed, so a payload never changes under its hash
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .eTag(hash)
+                .body(service.getContext(hash));
+    }
+
+    @GetMapping(value = "/{id}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all messages of a session as NDJSON")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable UUID id) {
+        log.info("export session id={}", id);
+        // The stream runs after the response is committed with 200, when exportMessages can no longer turn a missing
+        // session into a 404; check it first, against the metadata cache rather than with a transaction of its own
+        service.requireSession(id);
+
+        StreamingResponseBody body = out -> {
+            long count;
+            try (SequenceWriter writer = objectMapper.writerFor(MessageView.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                count = service.exportMessages(id, view -> {
+                    try {
+                        writer.write(view);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+            if (count > 0) {
+                out.write('\n');
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("session-" + id + ".ndjson").build().toString())
+                .body(body);
+    }
+
+    private static <T> ResponseEntity<T> withETag(Versioned<T> versioned) {
+        return ResponseEntity.ok().eTag(Long.toString(versioned.version())).body(versioned.value());
+    }
+
+    /**
+     * The version an If-Match header asks for, or null when it is absent or "*". A weak or malformed tag can never
+     * match a strong ETag, so it fails the precondition without touching the database.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new CustomGlobalException(ErrorCode.SESSION_MODIFIED);
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException ex) {
+            throw new CustomGlobalException(ErrorCode.SESSION_MODIFIED);
+        }
+    }
 }
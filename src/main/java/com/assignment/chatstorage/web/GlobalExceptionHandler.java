@@ -7,10 +7,12 @@ import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @Slf4j
 @RestControllerAdvice
@@ -30,6 +32,18 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(body);
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<?> typeMismatch(MethodArgumentTypeMismatchException ex) {
+        log.warn("Invalid value for parameter {}", ex.getName());
+        return ResponseEntity.badRequest().body(Map.of("detail", "Invalid value for parameter '" + ex.getName() + "'"));
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<?> unreadable(HttpMessageNotReadableException ex) {
+        log.warn("Unreadable request body: {}", ex.getMostSpecificCause().getMessage());
+        return ResponseEntity.badRequest().body(Map.of("detail", "Malformed request body"));
+    }
+
     @ExceptionHandler(CustomGlobalException.class)
     public ResponseEntity<?> handleCustomGlobalException(CustomGlobalException ex) {
         HttpStatus status = mapStatus(ex.getCode());
@@ -47,9 +61,16 @@ public class GlobalExceptionHandler {
     }
 
     private HttpStatus mapStatus(String code) {
-        if (ErrorCode.SESSION_NOT_FOUND.getCode().equals(code)) {
+        if (ErrorCode.SESSION_NOT_FOUND.getCode().equals(code) || ErrorCode.MESSAGE_NOT_FOUND.getCode().equals(code)
+                || ErrorCode.CONTEXT_NOT_FOUND.getCode().equals(code)) {
             return HttpStatus.NOT_FOUND;
         }
+        if (ErrorCode.SESSION_MODIFIED.getCode().equals(code)) {
+            return HttpStatus.PRECONDITION_FAILED;
+        }
+        if (ErrorCode.INGEST_QUEUE_FULL.getCode().equals(code) || ErrorCode.INGEST_TIMEOUT.getCode().equals(code)) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
 
         // Default to BAD_REQUEST for input-related errors
         return HttpStatus.BAD_REQUEST;
@@ -0,0 +1,9 @@
+-- Soft-deleted sessions are hard-deleted by SessionPurgeJob once purge.grace-period has passed since deleted_at.
+-- Sessions deleted before this migration start their grace period at their last update.
+
+ALTER TABLE tbl_chat_sessions ADD COLUMN deleted_at timestamp(6);
+
+UPDATE tbl_chat_sessions SET deleted_at = updated_at WHERE is_deleted = true;
+
+-- SessionPurgeJob: candidates in (deleted_at, id) order; only deleted rows are indexed
+CREATE INDEX idx_chat_sessions_deleted ON tbl_chat_sessions (deleted_at, id) WHERE is_deleted = true;
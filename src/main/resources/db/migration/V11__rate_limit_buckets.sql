@@ -0,0 +1,12 @@
+-- Shared Bucket4j state for ratelimit.mode=distributed (PostgresBucketProxyManager): one row per API key or client IP,
+-- locked with SELECT ... FOR UPDATE while a node synchronises its local tokens. Rows past expires_at (epoch millis, set
+-- once the bucket would be full again) are deleted in batches. Unlogged: after a crash the buckets simply start full.
+
+CREATE UNLOGGED TABLE tbl_rate_limit_buckets (
+    id         varchar(512) NOT NULL,
+    state      bytea,
+    expires_at bigint,
+    CONSTRAINT tbl_rate_limit_buckets_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_rate_limit_buckets_expires ON tbl_rate_limit_buckets (expires_at);
@@ -0,0 +1,4 @@
+-- Creation time of the oldest message inside an archive, so the retention job only decodes archives holding messages
+-- past a TTL. NULL for archives written before this column existed: retention checks those once and fills it in.
+
+ALTER TABLE tbl_chat_session_archives ADD COLUMN oldest_message_at timestamp(6);
@@ -0,0 +1,10 @@
+-- Since V3 the primary key of tbl_chat_messages is (id, created_at): a unique constraint on a partitioned table has to
+-- include the partition key, so nothing in the database keeps a message id unique on its own any more. Uniqueness
+-- now rests on the ids themselves, UUIDv7 generated by the application (UuidV7), and the code assumes it: getMessage
+-- expects at most one row per id, and the restore of an archive skips messages already present with
+-- "on conflict do nothing", which only matches rows with the same id and created_at.
+--
+-- Lookups by id alone get a plain index. On the partitioned parent it cannot be built CONCURRENTLY; it is created on
+-- each partition and blocks writes to the partition while that is built.
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_id ON tbl_chat_messages (id);
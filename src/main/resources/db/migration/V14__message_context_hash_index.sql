@@ -0,0 +1,6 @@
+-- Context payloads are deleted once no message references them (OrphanContextSweep). Finding those, and the foreign key
+-- check Postgres runs for every context row deleted, both look messages up by context_hash. Messages without a
+-- context are left out of the index. Like V13, it is built on each partition and blocks writes to it meanwhile.
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_context_hash ON tbl_chat_messages (context_hash)
+    WHERE context_hash IS NOT NULL;
@@ -0,0 +1,28 @@
+-- Schema as previously generated by hibernate.ddl-auto=update.
+-- Databases created that way are baselined at this version (spring.flyway.baseline-on-migrate) and skip this script.
+
+CREATE TABLE IF NOT EXISTS tbl_chat_sessions (
+    id          uuid         NOT NULL,
+    user_id     varchar(128) NOT NULL,
+    title       varchar(255) NOT NULL,
+    favorite    boolean      NOT NULL,
+    created_at  timestamp(6),
+    updated_at  timestamp(6),
+    is_active   boolean DEFAULT false,
+    is_deleted  boolean DEFAULT false,
+    CONSTRAINT tbl_chat_sessions_pkey PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS tbl_chat_messages (
+    id          uuid         NOT NULL,
+    session_id  uuid         NOT NULL,
+    content     text         NOT NULL,
+    context     varchar(255),
+    created_by  varchar(255),
+    created_at  timestamp(6),
+    updated_at  timestamp(6),
+    is_active   boolean DEFAULT false,
+    is_deleted  boolean DEFAULT false,
+    CONSTRAINT tbl_chat_messages_pkey PRIMARY KEY (id),
+    CONSTRAINT fk_chat_messages_session FOREIGN KEY (session_id) REFERENCES tbl_chat_sessions (id)
+);
@@ -0,0 +1,16 @@
+-- Indexes shaped after the repository queries. Built CONCURRENTLY so existing tables stay writable;
+-- Flyway runs this script outside a transaction because of that.
+
+-- ChatMessageRepository: findBySessionId ... order by created_at, the (created_at, id) keyset seeks and the export stream
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_session_created
+    ON tbl_chat_messages (session_id, created_at, id);
+
+-- ChatSessionRepository: findByUserIdAndIsDeletedFalseOrderByUpdatedAtDesc
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_updated
+    ON tbl_chat_sessions (user_id, updated_at DESC)
+    WHERE is_deleted = false;
+
+-- ChatSessionRepository: findByUserIdAndFavoriteAndIsDeletedFalseOrderByUpdatedAtDesc
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_favorite_updated
+    ON tbl_chat_sessions (user_id, favorite, updated_at DESC)
+    WHERE is_deleted = false;
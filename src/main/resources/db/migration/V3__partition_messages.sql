@@ -0,0 +1,44 @@
+-- Range-partition messages by month of created_at. New monthly partitions are created ahead of time (and old ones
+-- detached or dropped) by MessagePartitionMaintainer; the default partition only catches rows outside every range.
+-- The partition key has to be part of the primary key and may not be null.
+
+ALTER TABLE tbl_chat_messages RENAME TO tbl_chat_messages_unpartitioned;
+ALTER TABLE tbl_chat_messages_unpartitioned RENAME CONSTRAINT tbl_chat_messages_pkey TO tbl_chat_messages_unpartitioned_pkey;
+
+CREATE TABLE tbl_chat_messages (
+    id          uuid         NOT NULL,
+    session_id  uuid         NOT NULL,
+    content     text         NOT NULL,
+    context     varchar(255),
+    created_by  varchar(255),
+    created_at  timestamp(6) NOT NULL,
+    updated_at  timestamp(6),
+    is_active   boolean DEFAULT false,
+    is_deleted  boolean DEFAULT false,
+    CONSTRAINT tbl_chat_messages_pkey PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_chat_messages_session FOREIGN KEY (session_id) REFERENCES tbl_chat_sessions (id)
+) PARTITION BY RANGE (created_at);
+
+-- One partition per month from the oldest existing message up to three months ahead
+DO $$
+DECLARE
+    month date := date_trunc('month', coalesce(
+            (SELECT min(coalesce(created_at, updated_at)) FROM tbl_chat_messages_unpartitioned), now()));
+BEGIN
+    WHILE month <= date_trunc('month', now() + interval '3 months') LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF tbl_chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       'tbl_chat_messages_y' || to_char(month, 'YYYY"m"MM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+CREATE TABLE tbl_chat_messages_default PARTITION OF tbl_chat_messages DEFAULT;
+
+INSERT INTO tbl_chat_messages (id, session_id, content, context, created_by, created_at, updated_at, is_active, is_deleted)
+SELECT id, session_id, content, context, created_by, coalesce(created_at, updated_at, now()), updated_at, is_active, is_deleted
+FROM tbl_chat_messages_unpartitioned;
+
+DROP TABLE tbl_chat_messages_unpartitioned;
+
+-- Created on the parent so every current and future partition gets it
+CREATE INDEX idx_chat_messages_session_created ON tbl_chat_messages (session_id, created_at, id);
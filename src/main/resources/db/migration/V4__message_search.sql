@@ -0,0 +1,8 @@
+-- Full-text search over message content. The tsvector is stored rather than computed from an expression index so
+-- ranking the matches does not re-parse every matching message. Keep the text search configuration in sync with
+-- ChatMessageRepository.search.
+
+ALTER TABLE tbl_chat_messages
+    ADD COLUMN content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+
+CREATE INDEX idx_chat_messages_content_tsv ON tbl_chat_messages USING gin (content_tsv);
@@ -0,0 +1,17 @@
+-- Cold tier for inactive sessions: all messages of an archived session live in one compressed blob
+-- (SessionArchiver / MessageArchiveCodec) instead of rows in tbl_chat_messages.
+
+ALTER TABLE tbl_chat_sessions ADD COLUMN archived boolean NOT NULL DEFAULT false;
+
+CREATE TABLE tbl_chat_session_archives (
+    session_id     uuid         NOT NULL,
+    message_count  integer      NOT NULL,
+    hot_bytes      bigint       NOT NULL, -- on-disk size of the message rows that were moved
+    payload        bytea        NOT NULL,
+    archived_at    timestamp(6) NOT NULL,
+    CONSTRAINT tbl_chat_session_archives_pkey PRIMARY KEY (session_id),
+    CONSTRAINT fk_chat_session_archives_session FOREIGN KEY (session_id) REFERENCES tbl_chat_sessions (id)
+);
+
+-- Payloads are already compressed
+ALTER TABLE tbl_chat_session_archives ALTER COLUMN payload SET STORAGE EXTERNAL;
@@ -0,0 +1,29 @@
+-- Content-addressed store for RAG context payloads. Messages reference a payload by the hex SHA-256 of its UTF-8
+-- text, so a context repeated across turns is stored once. Large payloads are gzip-compressed (ContextStore).
+
+CREATE TABLE tbl_chat_contexts (
+    hash        varchar(64)  NOT NULL,
+    payload     bytea        NOT NULL,
+    compressed  boolean      NOT NULL,
+    size_bytes  integer      NOT NULL, -- uncompressed UTF-8 length
+    created_at  timestamp(6) NOT NULL,
+    CONSTRAINT tbl_chat_contexts_pkey PRIMARY KEY (hash)
+);
+
+ALTER TABLE tbl_chat_messages ADD COLUMN context_hash varchar(64);
+
+-- Existing contexts were capped at 255 characters by the old column, so none needs compressing
+INSERT INTO tbl_chat_contexts (hash, payload, compressed, size_bytes, created_at)
+SELECT DISTINCT encode(sha256(convert_to(context, 'UTF8')), 'hex'), convert_to(context, 'UTF8'), false,
+       octet_length(convert_to(context, 'UTF8')), now()
+FROM tbl_chat_messages
+WHERE context IS NOT NULL;
+
+UPDATE tbl_chat_messages
+SET context_hash = encode(sha256(convert_to(context, 'UTF8')), 'hex')
+WHERE context IS NOT NULL;
+
+ALTER TABLE tbl_chat_messages DROP COLUMN context;
+
+ALTER TABLE tbl_chat_messages
+    ADD CONSTRAINT fk_chat_messages_context FOREIGN KEY (context_hash) REFERENCES tbl_chat_contexts (hash);
@@ -0,0 +1,26 @@
+-- Denormalized activity counters on the session row, maintained by ChatSessionRepository.recordActivity on every
+-- message write. They count archived messages as well, so archiving and restoring leave them unchanged.
+
+ALTER TABLE tbl_chat_sessions
+    ADD COLUMN message_count   bigint NOT NULL DEFAULT 0,
+    ADD COLUMN content_bytes   bigint NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_at timestamp(6);
+
+UPDATE tbl_chat_sessions s
+SET message_count   = m.message_count,
+    content_bytes   = m.content_bytes,
+    last_message_at = m.last_message_at
+FROM (SELECT session_id,
+             count(*)                   AS message_count,
+             sum(octet_length(content)) AS content_bytes,
+             max(created_at)            AS last_message_at
+      FROM tbl_chat_messages
+      GROUP BY session_id) m
+WHERE s.id = m.session_id;
+
+-- Archive blobs cannot be decoded here: archived sessions get their count from the archive row, while their byte total
+-- and last activity only cover messages that were still hot
+UPDATE tbl_chat_sessions s
+SET message_count = s.message_count + a.message_count
+FROM tbl_chat_session_archives a
+WHERE s.id = a.session_id;
@@ -0,0 +1,15 @@
+-- Session lists are ordered by last activity instead of updated_at. Built CONCURRENTLY like V2, so this script also
+-- runs outside a transaction.
+
+-- ChatSessionRepository: findViewsByUserId ... order by coalesce(last_message_at, created_at) desc
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_activity
+    ON tbl_chat_sessions (user_id, coalesce(last_message_at, created_at) DESC)
+    WHERE is_deleted = false;
+
+-- ChatSessionRepository: findViewsByUserIdAndFavorite
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_favorite_activity
+    ON tbl_chat_sessions (user_id, favorite, coalesce(last_message_at, created_at) DESC)
+    WHERE is_deleted = false;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_sessions_user_updated;
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_sessions_user_favorite_updated;
@@ -0,0 +1,4 @@
+-- Optimistic-lock version of a session's own fields (title, favorite, deleted), exposed as ETag / If-Match.
+-- Activity counters (V7) do not bump it: adding messages never conflicts with a rename.
+
+ALTER TABLE tbl_chat_sessions ADD COLUMN version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,67 @@
+package com.assignment.chatstorage.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.service.impl.GroupCommitIngestor;
+import com.assignment.chatstorage.service.impl.MessageWriter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Messages/sec of the per-request write path against the group-commit queue. Needs a running Postgres
+ * (see docker-compose.yml): {@code CHAT_BENCHMARK=true mvn test -Dtest=IngestThroughputBenchmarkTest}
+ */
+@Slf4j
+@SpringBootTest(properties = "ingest.group-commit-enabled=true")
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+class IngestThroughputBenchmarkTest {
+
+    private static final int THREADS = 32;
+    private static final int MESSAGES = 20_000;
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    MessageWriter messageWriter;
+    @Autowired
+    GroupCommitIngestor groupCommitIngestor;
+
+    @Test
+    void directVersusGroupCommit() throws InterruptedException {
+        UUID sessionId = chatService.createSession(new SessionCreate("bench-user", "ingest benchmark")).id();
+
+        // Warm up connections, JIT and the statement cache before measuring
+        measure(req -> messageWriter.write(sessionId, List.of(req)), 1_000);
+
+        double direct = measure(req -> messageWriter.write(sessionId, List.of(req)), MESSAGES);
+        double grouped = measure(req -> groupCommitIngestor.submit(sessionId, req), MESSAGES);
+
+        log.info("Ingest throughput threads={} messages={} direct={} msg/s groupCommit={} msg/s speedup={}x",
+                THREADS, MESSAGES, Math.round(direct), Math.round(grouped), String.format("%.2f", grouped / direct));
+        assertThat(grouped).isPositive();
+    }
+
+    private double measure(Consumer<MessageCreate> write, int messages) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            MessageCreate req = new MessageCreate(i % 2 == 0 ? "user" : "assistant", "benchmark message " + i, null);
+            pool.execute(() -> write.accept(req));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.MINUTES)).isTrue();
+        return messages / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,110 @@
+package com.assignment.chatstorage.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.dto.ContextMode;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.dto.FieldSelection;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.MessageViewMode;
+import com.assignment.chatstorage.entity.ChatMessage;
+import com.assignment.chatstorage.mapper.ChatMapper;
+import com.assignment.chatstorage.service.ChatService;
+import jakarta.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Latency and heap allocation of reading one 1,000-message page: hydrating managed entities and mapping them (the
+ * previous read path) against projecting straight into views, with all fields and with a field subset. Needs a
+ * running Postgres (see docker-compose.yml): {@code CHAT_BENCHMARK=true mvn test -Dtest=MessageReadPathBenchmarkTest}
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+class MessageReadPathBenchmarkTest {
+
+    private static final int PAGE = 1_000;
+    private static final int WARMUP = 50;
+    private static final int READS = 200;
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    EntityManager entityManager;
+    @Autowired
+    TransactionTemplate tx;
+
+    @Test
+    void entityVersusProjectionPage() {
+        UUID sessionId = chatService.createSession(new SessionCreate("bench-user", "read path benchmark")).id();
+        String answer = "To rotate the signing key, publish the new key first, wait for caches to expire, then switch. ".repeat(10);
+        List<MessageCreate> batch = new ArrayList<>();
+        for (int i = 0; i < PAGE; i++) {
+            batch.add(new MessageCreate(i % 2 == 0 ? "user" : "assistant", i + ": " + answer, null));
+            if (batch.size() == 500) {
+                chatService.addMessages(sessionId, batch);
+                batch.clear();
+            }
+        }
+
+        var fields = FieldSelection.parse(MessageView.class, "id,createdBy,createdAt");
+        var subset = new MessageListOptions(ContextMode.FULL, MessageViewMode.FULL, fields);
+
+        Result entities = measure(() -> tx.execute(status -> entityPage(sessionId).size()));
+        Result views = measure(() -> chatService.listMessages(sessionId, null, null, PAGE, MessageListOptions.DEFAULT).content().size());
+        Result subsetViews = measure(() -> chatService.listMessages(sessionId, null, null, PAGE, subset).content().size());
+
+        log.info("Read path, {}-message page | entities + mapper {} | projection {} | projection fields={} {}",
+                PAGE, entities, views, fields, subsetViews);
+        assertThat(views.bytes()).isLessThan(entities.bytes());
+        assertThat(subsetViews.bytes()).isLessThan(views.bytes());
+    }
+
+    /** The read path before projections: managed entities, dirty-checked at commit, then mapped */
+    private List<MessageView> entityPage(UUID sessionId) {
+        return entityManager.createQuery("""
+                        select m from ChatMessage m
+                        where m.session.id = :sessionId
+                        order by m.createdAt asc, m.id asc
+                        """, ChatMessage.class)
+                .setParameter("sessionId", sessionId)
+                .setMaxResults(PAGE)
+                .getResultStream()
+                .map(ChatMapper::toMessageView)
+                .toList();
+    }
+
+    private static Result measure(IntSupplier read) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(read.getAsInt()).isEqualTo(PAGE);
+        }
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            read.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Result(nanos / 1_000_000.0 / READS, (threads.getCurrentThreadAllocatedBytes() - bytes) / READS);
+    }
+
+    private record Result(double millis, long bytes) {
+
+        @Override
+        public String toString() {
+            return String.format("%.2f ms, %d KB allocated", millis, bytes / 1024);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.assignment.chatstorage.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.RateLimitProperties;
+import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.security.RateLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Pushes millions of distinct forwarded addresses through {@link RateLimitFilter}, as a client rotating or spoofing
+ * X-Forwarded-For would, and checks that the bucket store stays at its bound and throughput does not degrade as it
+ * churns. No database needed: {@code CHAT_BENCHMARK=true mvn test -Dtest=RateLimitBucketStoreBenchmarkTest}
+ */
+@Slf4j
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+class RateLimitBucketStoreBenchmarkTest {
+
+    private static final int ROUNDS = 5;
+    private static final int KEYS_PER_ROUND = 1_000_000;
+    private static final long MAX_BUCKETS = 50_000;
+
+    @Test
+    void distinctKeysStayBounded() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setMaxBuckets(MAX_BUCKETS);
+        RateLimitFilter filter = new RateLimitFilter(props, new SimpleMeterRegistry());
+        FilterChain chain = (request, response) -> { };
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        List<Long> requestsPerSecond = new ArrayList<>();
+        List<Long> heapMb = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < KEYS_PER_ROUND; i++, next++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/session");
+                request.addHeader(HeaderConstants.FORWARDED_FOR, address(next) + ", 10.0.0.1");
+                filter.doFilter(request, new MockHttpServletResponse(), chain);
+            }
+            requestsPerSecond.add(Math.round(KEYS_PER_ROUND / ((System.nanoTime() - start) / 1_000_000_000.0)));
+            assertThat(filter.bucketCount()).isLessThanOrEqualTo(MAX_BUCKETS);
+            System.gc();
+            heapMb.add(memory.getHeapMemoryUsage().getUsed() >> 20);
+        }
+
+        log.info("Rate limit bucket store keys={} buckets={} requests/s per round={} heap MB after each round={}",
+                ROUNDS * KEYS_PER_ROUND, filter.bucketCount(), requestsPerSecond, heapMb);
+        // The store is full after the first round; later rounds only churn it
+        assertThat(heapMb.get(ROUNDS - 1)).isLessThan(heapMb.get(1) * 2 + 16);
+        assertThat(requestsPerSecond.get(ROUNDS - 1)).isGreaterThan(requestsPerSecond.get(1) / 2);
+    }
+
+    private static String address(int n) {
+        return (n >>> 24 & 0xff) + "." + (n >>> 16 & 0xff) + "." + (n >>> 8 & 0xff) + "." + (n & 0xff);
+    }
+}
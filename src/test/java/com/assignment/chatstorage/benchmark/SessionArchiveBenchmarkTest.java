@@ -0,0 +1,98 @@
+package com.assignment.chatstorage.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Storage saved by archiving a session and the latency of reading it back, against reading the same session from the
+ * hot table. Needs a running Postgres (see docker-compose.yml):
+ * {@code CHAT_BENCHMARK=true mvn test -Dtest=SessionArchiveBenchmarkTest}
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+class SessionArchiveBenchmarkTest {
+
+    private static final int MESSAGES = 2_000;
+    private static final int READS = 200;
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    SessionArchiver archiver;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    void hotVersusArchivedSession() {
+        UUID sessionId = chatService.createSession(new SessionCreate("bench-user", "archive benchmark")).id();
+        List<MessageCreate> batch = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            batch.add(new MessageCreate(i % 2 == 0 ? "user" : "assistant",
+                    "Message " + i + ": how should the retry policy for the payment service handle a timeout from the ledger?",
+                    i % 10 == 0 ? "{\"source\":\"kb\",\"doc\":" + i + "}" : null));
+            if (batch.size() == 500) {
+                chatService.addMessages(sessionId, batch);
+                batch.clear();
+            }
+        }
+
+        double hotMillis = readAll(sessionId);
+        assertThat(archiver.archive(sessionId, LocalDateTime.now().plusMinutes(1))).isEqualTo(MESSAGES);
+        double archivedMillis = readAll(sessionId);
+
+        Long hotBytes = jdbc.queryForObject("select hot_bytes from tbl_chat_session_archives where session_id = ?", Long.class, sessionId);
+        Integer archiveBytes = jdbc.queryForObject("select length(payload) from tbl_chat_session_archives where session_id = ?",
+                Integer.class, sessionId);
+        Timer decompress = registry.get("chat.archive.read").timer();
+        log.info("Session archive messages={} hot rows {} KB -> archive {} KB ({}x) | full read hot {} ms, archived {} ms,"
+                        + " load+decompress on cache miss {} ms",
+                MESSAGES, hotBytes / 1024, archiveBytes / 1024, hotBytes / archiveBytes,
+                String.format("%.2f", hotMillis), String.format("%.2f", archivedMillis),
+                String.format("%.2f", decompress.mean(TimeUnit.MILLISECONDS)));
+        assertThat(archiveBytes).isLessThan(hotBytes.intValue());
+    }
+
+    /** Mean time to page through the whole session, 100 messages at a time */
+    private double readAll(UUID sessionId) {
+        for (int i = 0; i < 20; i++) {
+            pageThrough(sessionId);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            assertThat(pageThrough(sessionId)).isEqualTo(MESSAGES);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / READS;
+    }
+
+    private int pageThrough(UUID sessionId) {
+        int seen = 0;
+        String after = null;
+        do {
+            var page = chatService.listMessages(sessionId, after, null, 100, MessageListOptions.DEFAULT);
+            seen += page.content().size();
+            after = page.nextCursor();
+        } while (after != null);
+        return seen;
+    }
+}
@@ -0,0 +1,65 @@
+package com.assignment.chatstorage.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.util.UuidV7;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Insert throughput and primary-key index size of random (v4) against time-ordered (v7) ids. Needs a running Postgres
+ * (see docker-compose.yml): {@code CHAT_BENCHMARK=true mvn test -Dtest=UuidIndexBenchmarkTest}
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_BENCHMARK", matches = "true")
+class UuidIndexBenchmarkTest {
+
+    private static final int ROWS = 1_000_000;
+    private static final int BATCH = 1_000;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    void randomVersusTimeOrderedKeys() {
+        Result v4 = run("bench_uuid_v4", UUID::randomUUID);
+        Result v7 = run("bench_uuid_v7", UuidV7::next);
+
+        log.info("UUID keys rows={} v4: {} rows/s, index {} MB | v7: {} rows/s, index {} MB",
+                ROWS, v4.rowsPerSecond(), v4.indexBytes() >> 20, v7.rowsPerSecond(), v7.indexBytes() >> 20);
+        assertThat(v7.indexBytes()).isPositive();
+    }
+
+    private Result run(String table, Supplier<UUID> ids) {
+        jdbc.execute("drop table if exists " + table);
+        jdbc.execute("create table " + table + " (id uuid primary key, created_at timestamp not null default now(), payload text)");
+        try {
+            long start = System.nanoTime();
+            for (int done = 0; done < ROWS; done += BATCH) {
+                List<Object[]> rows = new ArrayList<>(BATCH);
+                for (int i = 0; i < BATCH; i++) {
+                    rows.add(new Object[] {ids.get(), "message payload " + (done + i)});
+                }
+                jdbc.batchUpdate("insert into " + table + " (id, payload) values (?, ?)", rows);
+            }
+            long rowsPerSecond = Math.round(ROWS / ((System.nanoTime() - start) / 1_000_000_000.0));
+            Long indexBytes = jdbc.queryForObject("select pg_relation_size('" + table + "_pkey')", Long.class);
+            return new Result(rowsPerSecond, indexBytes == null ? 0 : indexBytes);
+        } finally {
+            jdbc.execute("drop table if exists " + table);
+        }
+    }
+
+    private record Result(long rowsPerSecond, long indexBytes) {
+
+    }
+}
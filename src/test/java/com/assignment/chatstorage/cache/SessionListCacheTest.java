@@ -0,0 +1,34 @@
+package com.assignment.chatstorage.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.ChatCacheProperties;
+import com.assignment.chatstorage.dto.Dtos.SessionView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SessionListCacheTest {
+
+    @Test
+    @DisplayName("list is loaded once per user until invalidated")
+    void get_loadsOncePerUser() {
+        var cache = new SessionListCache(new ChatCacheProperties(), new SimpleMeterRegistry());
+        var loads = new AtomicInteger();
+
+        cache.get("u", userId -> load(loads));
+        cache.get("u", userId -> load(loads));
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate("u");
+        cache.get("u", userId -> load(loads));
+        assertThat(loads).hasValue(2);
+    }
+
+    private static List<SessionView> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return List.of(new SessionView(null, "u", "t", false, null, null, 0, null, 0));
+    }
+}
@@ -0,0 +1,87 @@
+package com.assignment.chatstorage.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.assignment.chatstorage.config.ChatCacheProperties;
+import com.assignment.chatstorage.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SessionMetadataCacheTest {
+
+    private static final UUID ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID OTHER = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private final ChatSessionRepository repo = mock(ChatSessionRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("repeated lookups hit the cache and are reported as hits")
+    void get_cachesLookups() {
+        given(repo.findMetadataById(ID)).willReturn(Optional.of(new SessionMetadata(ID, "u", false)));
+        var cache = cache(true, List.of());
+
+        assertThat(cache.get(ID)).map(SessionMetadata::userId).contains("u");
+        assertThat(cache.get(ID)).isPresent();
+
+        verify(repo, times(1)).findMetadataById(ID);
+        assertThat(registry.get("cache.gets").tag("cache", "sessionMetadata").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("invalidate evicts the entry and notifies listeners")
+    void invalidate_evictsAndNotifies() {
+        given(repo.findMetadataById(ID)).willReturn(Optional.of(new SessionMetadata(ID, "u", false)));
+        var listener = mock(SessionInvalidationListener.class);
+        var cache = cache(true, List.of(listener));
+
+        cache.get(ID);
+        cache.invalidate(ID);
+        cache.get(ID);
+
+        verify(repo, times(2)).findMetadataById(ID);
+        verify(listener).sessionInvalidated(ID);
+    }
+
+    @Test
+    @DisplayName("getAll loads only the misses in one query and omits unknown ids")
+    void getAll_loadsMissesTogether() {
+        given(repo.findMetadataById(ID)).willReturn(Optional.of(new SessionMetadata(ID, "u", false)));
+        given(repo.findMetadataByIdIn(any())).willReturn(List.of());
+        var cache = cache(true, List.of());
+
+        cache.get(ID);
+        var result = cache.getAll(Set.of(ID, OTHER));
+
+        assertThat(result).containsOnlyKeys(ID);
+        verify(repo).findMetadataByIdIn(Set.of(OTHER));
+    }
+
+    @Test
+    @DisplayName("disabled cache always reads through")
+    void get_disabledReadsThrough() {
+        given(repo.findMetadataById(ID)).willReturn(Optional.of(new SessionMetadata(ID, "u", false)));
+        var cache = cache(false, List.of());
+
+        cache.get(ID);
+        cache.get(ID);
+
+        verify(repo, times(2)).findMetadataById(ID);
+    }
+
+    private SessionMetadataCache cache(boolean enabled, List<SessionInvalidationListener> listeners) {
+        var props = new ChatCacheProperties();
+        props.getSession().setEnabled(enabled);
+        return new SessionMetadataCache(repo, props, registry, listeners);
+    }
+}
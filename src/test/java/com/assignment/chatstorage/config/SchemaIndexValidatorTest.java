@@ -0,0 +1,47 @@
+package com.assignment.chatstorage.config;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class SchemaIndexValidatorTest {
+
+    @Mock
+    JdbcTemplate jdbc;
+
+    SchemaIndexValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        SchemaProperties props = new SchemaProperties();
+        props.setRequiredIndexes(List.of("idx_a", "idx_b"));
+        validator = new SchemaIndexValidator(jdbc, props);
+    }
+
+    @Test
+    void run_allIndexesPresent_passes() {
+        when(jdbc.queryForList(anyString(), eq(String.class))).thenReturn(List.of("pk", "idx_a", "idx_b"));
+
+        assertThatCode(() -> validator.run(null)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void run_missingIndex_failsStartup() {
+        when(jdbc.queryForList(anyString(), eq(String.class))).thenReturn(List.of("idx_a"));
+
+        assertThatThrownBy(() -> validator.run(null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("idx_b");
+    }
+}
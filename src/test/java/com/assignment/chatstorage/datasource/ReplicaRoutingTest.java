@@ -0,0 +1,127 @@
+package com.assignment.chatstorage.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionView;
+import com.assignment.chatstorage.service.ChatService;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Routes reads to a second database on the same server standing in for a replica; its rows are written directly, so
+ * which database answered is visible in the result. Needs a running Postgres (see docker-compose.yml):
+ * {@code CHAT_POSTGRES_IT=true mvn test -Dtest=ReplicaRoutingTest}
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class ReplicaRoutingTest {
+
+    private static final String SERVER = "jdbc:postgresql://" + env("DB_HOST", "localhost") + ":" + env("DB_PORT", "5432") + "/";
+    private static final String REPLICA_DB = "chat_replica_it";
+    private static final String USER = env("DB_USER", "postgres");
+    private static final String PASSWORD = env("DB_PASSWORD", "postgres");
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    ReplicaHealthIndicator replicaHealth;
+
+    @DynamicPropertySource
+    static void replica(DynamicPropertyRegistry registry) {
+        registry.add("replica.enabled", () -> "true");
+        registry.add("replica.urls", () -> SERVER + REPLICA_DB);
+        // The list cache would hide which database answered
+        registry.add("cache.session-list.enabled", () -> "false");
+    }
+
+    @BeforeAll
+    static void createReplica() throws SQLException {
+        try (Connection con = DriverManager.getConnection(SERVER + env("DB_NAME", "chat_db"), USER, PASSWORD);
+                Statement st = con.createStatement()) {
+            if (!st.executeQuery("select 1 from pg_database where datname = '" + REPLICA_DB + "'").next()) {
+                st.execute("create database " + REPLICA_DB);
+            }
+            st.execute("alter database " + REPLICA_DB + " allow_connections true");
+        }
+        Flyway.configure()
+                .dataSource(SERVER + REPLICA_DB, USER, PASSWORD)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+    }
+
+    @AfterEach
+    void replicaBack() throws Exception {
+        primary("alter database " + REPLICA_DB + " allow_connections true");
+        // The pool backs off after failed connects, so the replica may take a few probes to come back
+        for (int i = 0; i < 50 && Boolean.TRUE.equals(replicaHealth.health().getDetails().get("readsOnPrimary")); i++) {
+            Thread.sleep(200);
+            replicaHealth.check();
+        }
+    }
+
+    @Test
+    @DisplayName("read-only transactions are served by the replica unless the user was just written")
+    void readsFromReplicaAndPinsAfterWrite() {
+        String replicaOnly = "replica-" + UUID.randomUUID();
+        UUID id = UUID.randomUUID();
+        replicaJdbc().update("insert into tbl_chat_sessions (id, user_id, title, favorite, created_at, updated_at) "
+                + "values (?, ?, 'on replica', false, now(), now())", id, replicaOnly);
+
+        assertThat(chatService.listSessions(replicaOnly, null)).extracting(SessionView::id).containsExactly(id);
+
+        String written = "primary-" + UUID.randomUUID();
+        UUID created = chatService.createSession(new SessionCreate(written, "on primary")).id();
+        assertThat(chatService.listSessions(written, null)).extracting(SessionView::id).containsExactly(created);
+    }
+
+    @Test
+    @DisplayName("reads fall back to the primary while no replica is reachable")
+    void fallsBackToPrimary() throws SQLException {
+        String replicaOnly = "replica-" + UUID.randomUUID();
+        replicaJdbc().update("insert into tbl_chat_sessions (id, user_id, title, favorite, created_at, updated_at) "
+                + "values (?, ?, 'on replica', false, now(), now())", UUID.randomUUID(), replicaOnly);
+
+        primary("alter database " + REPLICA_DB + " allow_connections false");
+        primary("select pg_terminate_backend(pid) from pg_stat_activity where datname = '" + REPLICA_DB + "'");
+        replicaHealth.check();
+
+        assertThat(replicaHealth.health().getDetails()).containsEntry("readsOnPrimary", true);
+        List<SessionView> sessions = chatService.listSessions(replicaOnly, null);
+        assertThat(sessions).isEmpty();
+    }
+
+    private static JdbcTemplate replicaJdbc() {
+        return new JdbcTemplate(new SingleConnectionDataSource(SERVER + REPLICA_DB, USER, PASSWORD, true));
+    }
+
+    private static void primary(String sql) throws SQLException {
+        try (Connection con = DriverManager.getConnection(SERVER + env("DB_NAME", "chat_db"), USER, PASSWORD);
+                Statement st = con.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null ? fallback : value;
+    }
+}
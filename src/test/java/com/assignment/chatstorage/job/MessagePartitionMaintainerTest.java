@@ -0,0 +1,123 @@
+package com.assignment.chatstorage.job;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.config.PartitionProperties;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionMaintainerTest {
+
+    private static final YearMonth NOW = YearMonth.of(2025, 11);
+
+    @Mock
+    JdbcTemplate jdbc;
+
+    @Mock
+    TransactionTemplate tx;
+
+    @Mock
+    SessionMetadataCache sessionCache;
+
+    @Mock
+    SessionListCache sessionListCache;
+
+    PartitionProperties props;
+    MessagePartitionMaintainer maintainer;
+
+    @BeforeEach
+    void setUp() {
+        props = new PartitionProperties();
+        props.setMonthsAhead(2);
+        maintainer = new MessagePartitionMaintainer(jdbc, tx, props, sessionCache, sessionListCache);
+    }
+
+    @Test
+    @DisplayName("maintain creates missing monthly partitions ahead, across the year boundary")
+    void maintain_createsAhead() {
+        given(jdbc.queryForObject(anyString(), eq(String.class), eq("tbl_chat_messages"))).willReturn("p");
+        given(jdbc.queryForList(anyString(), eq(String.class), eq("tbl_chat_messages")))
+                .willReturn(List.of("tbl_chat_messages_y2025m11", "tbl_chat_messages_default"));
+
+        maintainer.maintain(NOW);
+
+        verify(jdbc, never()).execute(contains("tbl_chat_messages_y2025m11 partition of"));
+        verify(jdbc).execute("create table if not exists tbl_chat_messages_y2025m12 partition of tbl_chat_messages"
+                + " for values from ('2025-12-01') to ('2026-01-01')");
+        verify(jdbc).execute("create table if not exists tbl_chat_messages_y2026m01 partition of tbl_chat_messages"
+                + " for values from ('2026-01-01') to ('2026-02-01')");
+    }
+
+    @Test
+    @DisplayName("maintain takes retired messages out of the session counters, then detaches and drops past retention only")
+    void maintain_retiresOld() throws Exception {
+        props.setMonthsAhead(0);
+        props.setRetentionMonths(6);
+        props.setDropDetached(true);
+        given(jdbc.queryForObject(anyString(), eq(String.class), eq("tbl_chat_messages"))).willReturn("p");
+        given(jdbc.queryForList(anyString(), eq(String.class), eq("tbl_chat_messages"))).willReturn(List.of(
+                "tbl_chat_messages_y2025m04", "tbl_chat_messages_y2025m05", "tbl_chat_messages_y2025m11",
+                "tbl_chat_messages_default"));
+
+        willAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).given(tx).executeWithoutResult(any());
+        UUID session = UUID.randomUUID();
+        ResultSet row = Mockito.mock(ResultSet.class);
+        given(row.getObject("id", UUID.class)).willReturn(session);
+        given(row.getString("user_id")).willReturn("u1");
+        Timestamp end = Timestamp.valueOf("2025-05-01 00:00:00");
+        given(jdbc.query(contains("from tbl_chat_messages_y2025m04"), ArgumentMatchers.<RowMapper<Object>>any(), eq(end), eq(end)))
+                .willAnswer(inv -> List.of(inv.<RowMapper<?>>getArgument(1).mapRow(row, 0)));
+
+        maintainer.maintain(NOW);
+
+        InOrder order = inOrder(jdbc);
+        order.verify(jdbc).query(contains("update tbl_chat_sessions"), ArgumentMatchers.<RowMapper<Object>>any(), eq(end), eq(end));
+        order.verify(jdbc).execute("alter table tbl_chat_messages detach partition tbl_chat_messages_y2025m04");
+        order.verify(jdbc).execute("drop table tbl_chat_messages_y2025m04");
+        verify(sessionCache).invalidate(session);
+        verify(sessionListCache).invalidate("u1");
+        verify(jdbc, never()).execute(contains("tbl_chat_messages_y2025m05"));
+        verify(jdbc, never()).execute(contains("tbl_chat_messages_default"));
+    }
+
+    @Test
+    @DisplayName("maintain does nothing when the table is not partitioned")
+    void maintain_notPartitioned() {
+        given(jdbc.queryForObject(anyString(), eq(String.class), eq("tbl_chat_messages"))).willReturn("r");
+
+        maintainer.maintain(NOW);
+
+        verify(jdbc, never()).execute(anyString());
+    }
+}
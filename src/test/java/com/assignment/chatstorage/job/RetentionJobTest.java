@@ -0,0 +1,162 @@
+package com.assignment.chatstorage.job;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.RetentionProperties;
+import com.assignment.chatstorage.config.RetentionProperties.Policy;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.job.RetentionJob.RetentionReport;
+import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.service.impl.ContextStore;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Runs {@link RetentionJob} against a real database. Needs a running Postgres (see docker-compose.yml):
+ * {@code CHAT_POSTGRES_IT=true mvn test -Dtest=RetentionJobTest}
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class RetentionJobTest {
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    RetentionJob job;
+    @Autowired
+    RetentionProperties props;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    SessionArchiver archiver;
+    @Autowired
+    ContextStore contextStore;
+
+    private final String tenant = "ret-" + UUID.randomUUID() + ":";
+
+    @BeforeEach
+    void policy() {
+        Policy policy = new Policy();
+        policy.setUserIdPrefix(tenant);
+        policy.setTtl(Duration.ofDays(30));
+        props.setPolicies(List.of(policy));
+        props.setChunkSize(10);
+        props.setChunkPause(Duration.ZERO);
+    }
+
+    @AfterEach
+    void reset() {
+        props.setPolicies(List.of());
+    }
+
+    @Test
+    @DisplayName("retention expires old messages in chunks, keeps the counters right and drops sessions with no recent activity")
+    void expiresPastTtl() {
+        UUID old = sessionWithMessages(tenant + "a", 25);
+        UUID mixed = sessionWithMessages(tenant + "a", 12);
+        UUID otherTenant = sessionWithMessages("other-" + UUID.randomUUID(), 5);
+        age(old, 0, 25, 40);
+        age(mixed, 0, 8, 40);
+        age(otherTenant, 0, 5, 400);
+
+        RetentionReport dryRun = job.run(true).orElseThrow();
+        assertThat(dryRun.messages()).isEqualTo(33);
+        assertThat(dryRun.sessions()).isEqualTo(1);
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", old)).isEqualTo(25);
+
+        RetentionReport report = job.run(false).orElseThrow();
+
+        assertThat(report.messages()).isEqualTo(33);
+        assertThat(report.sessions()).isEqualTo(1);
+        assertThat(count("select count(*) from tbl_chat_sessions where id = ?", old)).isZero();
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", mixed)).isEqualTo(4);
+        assertThat(count("select message_count from tbl_chat_sessions where id = ?", mixed)).isEqualTo(4);
+        assertThat(count("select content_bytes from tbl_chat_sessions where id = ?", mixed))
+                .isEqualTo(count("select sum(octet_length(content)) from tbl_chat_messages where session_id = ?", mixed));
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", otherTenant)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("retention trims archives: messages past the TTL leave the archive and the counters, the session stays")
+    void expiresInsideArchives() {
+        UUID archived = sessionWithMessages(tenant + "b", 10);
+        age(archived, 0, 6, 40);
+        assertThat(archiver.archive(archived, LocalDateTime.now().plusMinutes(1))).isEqualTo(10);
+
+        assertThat(job.run(true).orElseThrow().messages()).isEqualTo(6);
+        assertThat(archiver.read(archived)).hasSize(10);
+
+        RetentionReport report = job.run(false).orElseThrow();
+
+        assertThat(report.messages()).isEqualTo(6);
+        assertThat(report.sessions()).isZero();
+        assertThat(archiver.read(archived)).extracting(m -> m.content()).containsExactly("m6", "m7", "m8", "m9");
+        assertThat(count("select message_count from tbl_chat_session_archives where session_id = ?", archived)).isEqualTo(4);
+        assertThat(count("select message_count from tbl_chat_sessions where id = ?", archived)).isEqualTo(4);
+        assertThat(count("select content_bytes from tbl_chat_sessions where id = ?", archived)).isEqualTo(8);
+        // The oldest kept message is now recorded, so the next run does not decode the archive again
+        assertThat(job.run(false).orElseThrow().messages()).isZero();
+    }
+
+    @Test
+    @DisplayName("retention sweeps context payloads no message references any more, past the grace period only")
+    void sweepsOrphanedContexts() {
+        UUID session = chatService.createSession(new SessionCreate(tenant + "c", "contexts")).id();
+        chatService.addMessages(session, List.of(new MessageCreate("user", "m0", "{\"doc\":\"expired\"}"),
+                new MessageCreate("user", "m1", "{\"doc\":\"kept\"}")));
+        age(session, 0, 1, 40);
+        String expired = ContextStore.hash("{\"doc\":\"expired\"}");
+        String kept = ContextStore.hash("{\"doc\":\"kept\"}");
+        jdbc.update("update tbl_chat_contexts set created_at = created_at - interval '1 day' where hash in (?, ?)", expired, kept);
+        String fresh = ContextStore.hash("{\"doc\":\"fresh-" + UUID.randomUUID() + "\"}");
+        jdbc.update("""
+                insert into tbl_chat_contexts (hash, payload, compressed, size_bytes, created_at)
+                values (?, '\\x00'::bytea, false, 1, now())
+                """, fresh);
+
+        RetentionReport report = job.run(false).orElseThrow();
+
+        assertThat(report.messages()).isEqualTo(1);
+        assertThat(report.contexts()).isGreaterThanOrEqualTo(1);
+        assertThat(contextStore.resolve(List.of(expired, kept, fresh))).containsOnlyKeys(kept, fresh);
+        assertThat(chatService.listMessages(session, 0, 10, MessageListOptions.DEFAULT).getContent())
+                .extracting(m -> m.context()).containsExactly("{\"doc\":\"kept\"}");
+    }
+
+    private UUID sessionWithMessages(String userId, int messages) {
+        UUID id = chatService.createSession(new SessionCreate(userId, "retention")).id();
+        chatService.addMessages(id, IntStream.range(0, messages).mapToObj(i -> new MessageCreate("user", "m" + i, null)).toList());
+        return id;
+    }
+
+    /** Moves messages [from, to) of the session (in write order) and, when they were its last, the session itself into the past */
+    private void age(UUID sessionId, int from, int to, int days) {
+        jdbc.update("""
+                update tbl_chat_messages set created_at = created_at - make_interval(days => ?)
+                where id in (select id from tbl_chat_messages where session_id = ? order by created_at, id offset ? limit ?)
+                """, days, sessionId, from, to - from);
+        jdbc.update("""
+                update tbl_chat_sessions s set created_at = created_at - make_interval(days => ?),
+                    last_message_at = (select max(created_at) from tbl_chat_messages m where m.session_id = s.id)
+                where id = ?
+                """, days, sessionId);
+    }
+
+    private long count(String sql, UUID id) {
+        return jdbc.queryForObject(sql, Long.class, id);
+    }
+}
@@ -0,0 +1,36 @@
+package com.assignment.chatstorage.job;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.RetentionProperties.Policy;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RetentionPolicyTest {
+
+    private final List<Policy> policies = List.of(policy("", 730), policy("acme:", 30), policy("acme:legal:", 365));
+
+    @Test
+    @DisplayName("the longest matching userId prefix decides the TTL")
+    void longestPrefixWins() {
+        assertThat(RetentionJob.ttlFor(policies, "acme:legal:42")).contains(Duration.ofDays(365));
+        assertThat(RetentionJob.ttlFor(policies, "acme:7")).contains(Duration.ofDays(30));
+        assertThat(RetentionJob.ttlFor(policies, "globex:7")).contains(Duration.ofDays(730));
+    }
+
+    @Test
+    @DisplayName("users matching no policy keep their data")
+    void noMatchingPolicy() {
+        assertThat(RetentionJob.ttlFor(List.of(policy("acme:", 30)), "globex:7")).isEmpty();
+        assertThat(RetentionJob.ttlFor(List.of(), "acme:7")).isEmpty();
+    }
+
+    private static Policy policy(String prefix, int days) {
+        Policy policy = new Policy();
+        policy.setUserIdPrefix(prefix);
+        policy.setTtl(Duration.ofDays(days));
+        return policy;
+    }
+}
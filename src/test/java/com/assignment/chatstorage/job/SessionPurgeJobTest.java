@@ -0,0 +1,109 @@
+package com.assignment.chatstorage.job;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.PurgeProperties;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.service.impl.ContextStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Runs {@link SessionPurgeJob} against a real database. Needs a running Postgres (see docker-compose.yml):
+ * {@code CHAT_POSTGRES_IT=true mvn test -Dtest=SessionPurgeJobTest}
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class SessionPurgeJobTest {
+
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    SessionPurgeJob job;
+    @Autowired
+    PurgeProperties props;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    MeterRegistry registry;
+    @Autowired
+    ContextStore contextStore;
+
+    @Test
+    @DisplayName("purge removes sessions past the grace period in message chunks and keeps recent deletions")
+    void purgesExpiredSessionsInChunks() {
+        props.setChunkSize(10);
+        props.setChunkPause(Duration.ZERO);
+        UUID expired = sessionWithMessages(25);
+        UUID recent = sessionWithMessages(3);
+        chatService.deleteSession(expired, null);
+        chatService.deleteSession(recent, null);
+        jdbc.update("update tbl_chat_sessions set deleted_at = deleted_at - interval '60 days' where id = ?", expired);
+        double chunksBefore = registry.get("chat.purge.chunks").counter().count();
+
+        job.run();
+
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", expired)).isZero();
+        assertThat(count("select count(*) from tbl_chat_sessions where id = ?", expired)).isZero();
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", recent)).isEqualTo(3);
+        // 10 + 10 + 5: the short chunk ends the session
+        assertThat(registry.get("chat.purge.chunks").counter().count() - chunksBefore).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("a session without created_at is purged from the start of time instead of aborting the run")
+    void purgesSessionWithoutCreatedAt() {
+        props.setChunkPause(Duration.ZERO);
+        UUID legacy = sessionWithMessages(4);
+        chatService.deleteSession(legacy, null);
+        jdbc.update("update tbl_chat_sessions set created_at = null, deleted_at = deleted_at - interval '60 days' where id = ?", legacy);
+
+        assertThat(job.run()).isPositive();
+
+        assertThat(count("select count(*) from tbl_chat_messages where session_id = ?", legacy)).isZero();
+        assertThat(count("select count(*) from tbl_chat_sessions where id = ?", legacy)).isZero();
+    }
+
+    @Test
+    @DisplayName("purge sweeps the context payloads only the purged messages referenced")
+    void purgesOrphanedContexts() {
+        props.setChunkPause(Duration.ZERO);
+        String only = "{\"doc\":\"purged-" + UUID.randomUUID() + "\"}";
+        String shared = "{\"doc\":\"shared-" + UUID.randomUUID() + "\"}";
+        UUID purged = chatService.createSession(new SessionCreate("purge-it", "purge")).id();
+        chatService.addMessages(purged, List.of(new MessageCreate("user", "m0", only), new MessageCreate("user", "m1", shared)));
+        UUID live = chatService.createSession(new SessionCreate("purge-it", "purge")).id();
+        chatService.addMessage(live, new MessageCreate("user", "m0", shared));
+        chatService.deleteSession(purged, null);
+        jdbc.update("update tbl_chat_sessions set deleted_at = deleted_at - interval '60 days' where id = ?", purged);
+        // Move both payloads past the grace period the sweep gives recent writes
+        jdbc.update("update tbl_chat_contexts set created_at = created_at - interval '1 day' where hash in (?, ?)",
+                ContextStore.hash(only), ContextStore.hash(shared));
+
+        job.run();
+
+        assertThat(contextStore.resolve(List.of(ContextStore.hash(only), ContextStore.hash(shared))))
+                .containsOnlyKeys(ContextStore.hash(shared));
+    }
+
+    private UUID sessionWithMessages(int messages) {
+        UUID id = chatService.createSession(new SessionCreate("purge-it", "purge")).id();
+        chatService.addMessages(id, IntStream.range(0, messages).mapToObj(i -> new MessageCreate("user", "m" + i, null)).toList());
+        return id;
+    }
+
+    private long count(String sql, UUID id) {
+        return jdbc.queryForObject(sql, Long.class, id);
+    }
+}
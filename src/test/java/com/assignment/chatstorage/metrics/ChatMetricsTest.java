@@ -0,0 +1,69 @@
+package com.assignment.chatstorage.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.RequiredSearch;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Checks the metric wiring in the full application: service timers, statement counts and size distributions. Needs a
+ * running Postgres (see docker-compose.yml): {@code CHAT_POSTGRES_IT=true mvn test -Dtest=ChatMetricsTest}
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class ChatMetricsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ChatService chatService;
+    @Autowired
+    MeterRegistry registry;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("requests record service timers, Hibernate statement counts and message size distributions")
+    void recordsHotPathMetrics() throws Exception {
+        UUID id = chatService.createSession(new SessionCreate("metrics-it", "metrics")).id();
+
+        mockMvc.perform(post("/api/v1/session/{id}/messages", id)
+                        .header(HeaderConstants.API_KEY, "change-me-please")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MessageCreate("user", "hello", null))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/session/{id}/messages", id).header(HeaderConstants.API_KEY, "change-me-please"))
+                .andExpect(status().isOk());
+
+        assertThat(search("chat.service").tag("method", "createSession").timer().count()).isPositive();
+        assertThat(search("chat.service").tag("method", "addMessage").timer().count()).isPositive();
+        assertThat(search("chat.request.statements").tags("method", "GET", "uri", "/api/v1/session/{id}/messages")
+                .summary().totalAmount()).isPositive();
+        assertThat(search("chat.messages.content.length").tag("ingest", "single").summary().max()).isEqualTo(5);
+        assertThat(search("chat.messages.page.rows").summary().count()).isPositive();
+        assertThat(search("chat.ratelimit.requests").tags("tier", "default", "result", "accepted").counter().count()).isPositive();
+        assertThat(search("hikaricp.connections.acquire").tag("pool", "primary").timer().count()).isPositive();
+    }
+
+    private RequiredSearch search(String name) {
+        return registry.get(name);
+    }
+}
@@ -0,0 +1,179 @@
+package com.assignment.chatstorage.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Checks with {@code EXPLAIN} that the message queries in {@link ChatMessageRepository} skip partitions outside their
+ * time bounds. The plans are taken of the SQL Hibernate generates for the repository methods, captured through the
+ * statement inspector, with the arguments bound in the order the placeholders appear in it. Needs a running Postgres
+ * (see docker-compose.yml): {@code CHAT_POSTGRES_IT=true mvn test -Dtest=MessagePartitionPruningTest}
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class MessagePartitionPruningTest {
+
+    private static final YearMonth OLD_MONTH = YearMonth.of(2001, 1);
+    private static final String OLD_PARTITION = "tbl_chat_messages_y2001m01";
+    private static final int LIMIT = 21;
+
+    /** The last statement Hibernate prepared on the current thread */
+    private static final ThreadLocal<String> LAST_SQL = new ThreadLocal<>();
+
+    @TestConfiguration
+    static class CaptureSql {
+
+        /** Records each statement, then hands it to the inspector already configured (the statement counter) */
+        @Bean
+        HibernatePropertiesCustomizer captureSql() {
+            return properties -> {
+                StatementInspector next = (StatementInspector) properties.get(AvailableSettings.STATEMENT_INSPECTOR);
+                properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                    LAST_SQL.set(sql);
+                    return next == null ? sql : next.inspect(sql);
+                });
+            };
+        }
+    }
+
+    @Autowired
+    ChatMessageRepository messages;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final UUID cursorId = UUID.randomUUID();
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void createOldPartition() {
+        jdbc.execute("create table if not exists " + OLD_PARTITION + " partition of tbl_chat_messages for values from ('"
+                + OLD_MONTH.atDay(1) + "') to ('" + OLD_MONTH.plusMonths(1).atDay(1) + "')");
+    }
+
+    @AfterEach
+    void dropOldPartition() {
+        jdbc.execute("drop table if exists " + OLD_PARTITION);
+        LAST_SQL.remove();
+    }
+
+    @Test
+    void findAfterPrunesOlderPartitionsAtPlanTime() {
+        LocalDateTime cursor = now.minusMinutes(1);
+        messages.findAfter(sessionId, cursor, cursorId, true, false, Limit.of(LIMIT));
+
+        String plan = explain(generated(), sessionId, ts(cursor), ts(cursor), cursorId, LIMIT);
+
+        assertThat(plan).doesNotContain(OLD_PARTITION).contains("tbl_chat_messages_y");
+    }
+
+    @Test
+    void findBeforePrunesPartitionsBeforeTheSession() {
+        LocalDateTime since = now.minusDays(1);
+        messages.findBefore(sessionId, since, now, cursorId, true, false, Limit.of(LIMIT));
+
+        String plan = explain(generated(), sessionId, ts(since), ts(now), ts(now), cursorId, LIMIT);
+
+        assertThat(plan).doesNotContain(OLD_PARTITION).contains("tbl_chat_messages_y");
+    }
+
+    @Test
+    void findFirstBySessionPrunesPartitionsBeforeTheSession() {
+        LocalDateTime since = now.minusDays(1);
+        messages.findFirstBySession(sessionId, since, true, false, Limit.of(LIMIT));
+
+        String plan = explain(generated(), sessionId, ts(since), LIMIT);
+
+        assertThat(plan).doesNotContain(OLD_PARTITION).contains("tbl_chat_messages_y");
+    }
+
+    @Test
+    void sessionOlderThanAPartitionStillScansIt() {
+        LocalDateTime since = LocalDateTime.of(2000, 12, 31, 0, 0);
+        messages.findFirstBySession(sessionId, since, true, false, Limit.of(LIMIT));
+
+        String plan = explain(generated(), sessionId, ts(since), LIMIT);
+
+        assertThat(plan).contains(OLD_PARTITION);
+    }
+
+    @Test
+    void findAfterPrunesAtExecutionForGenericPlans() {
+        messages.findAfter(sessionId, now, cursorId, true, false, Limit.of(LIMIT));
+        String sql = generated();
+        StringBuilder numbered = new StringBuilder();
+        int n = 0;
+        for (char c : sql.toCharArray()) {
+            numbered.append(c == '?' ? "$" + ++n : String.valueOf(c));
+        }
+
+        // Prepared statements switch to a generic plan after a few executions; pruning then happens at executor start
+        String plan = jdbc.execute((java.sql.Connection con) -> {
+            try (var st = con.createStatement()) {
+                st.execute("set plan_cache_mode = force_generic_plan");
+                st.execute("prepare find_after as " + numbered);
+                try (var rs = st.executeQuery("explain (analyze, costs off) execute find_after("
+                        + "false, true, false, false, false, '" + sessionId + "', now()::timestamp, now()::timestamp, '"
+                        + cursorId + "', " + LIMIT + ")")) {
+                    var out = new StringBuilder();
+                    while (rs.next()) {
+                        out.append(rs.getString(1)).append('\n');
+                    }
+                    return out.toString();
+                } finally {
+                    st.execute("deallocate find_after");
+                    st.execute("reset plan_cache_mode");
+                }
+            }
+        });
+
+        assertThat(plan).contains("Subplans Removed");
+    }
+
+    /** The statement the repository call just issued */
+    private static String generated() {
+        String sql = LAST_SQL.get();
+        assertThat(sql).as("generated SQL").contains("from tbl_chat_messages");
+        return sql;
+    }
+
+    /**
+     * Explains the generated statement. The projection binds the preview and content flags first (full content here),
+     * then come the given arguments of the where clause and the limit.
+     */
+    private String explain(String sql, Object... whereAndLimit) {
+        Object[] args = new Object[5 + whereAndLimit.length];
+        args[0] = false;
+        args[1] = true;
+        args[2] = false;
+        args[3] = false;
+        args[4] = false;
+        System.arraycopy(whereAndLimit, 0, args, 5, whereAndLimit.length);
+        assertThat(sql.chars().filter(c -> c == '?').count()).as("placeholders in " + sql).isEqualTo(args.length);
+        List<String> rows = jdbc.queryForList("explain (costs off) " + sql, String.class, args);
+        return String.join("\n", rows);
+    }
+
+    private static Timestamp ts(LocalDateTime time) {
+        return Timestamp.valueOf(time);
+    }
+}
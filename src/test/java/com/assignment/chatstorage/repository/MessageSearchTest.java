@@ -0,0 +1,67 @@
+package com.assignment.chatstorage.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.dto.Dtos.MessageCreate;
+import com.assignment.chatstorage.dto.Dtos.SearchHit;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.service.ChatService;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs {@link ChatMessageRepository#search} against a real database. Needs a running Postgres (see docker-compose.yml):
+ * {@code CHAT_POSTGRES_IT=true mvn test -Dtest=MessageSearchTest}
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class MessageSearchTest {
+
+    @Autowired
+    ChatService chatService;
+
+    @Autowired
+    SessionArchiver archiver;
+
+    private final String userId = "search-" + UUID.randomUUID();
+
+    @Test
+    @DisplayName("snippets escape the message's own markup, so <mark> is the only HTML in them")
+    void snippetEscapesMarkup() {
+        UUID session = chatService.createSession(new SessionCreate(userId, "search")).id();
+        chatService.addMessage(session, new MessageCreate("user",
+                "<script>alert('x')</script> the quarterly \"budget\" <img src=x onerror=alert(1)> & more", null));
+
+        List<SearchHit> hits = chatService.searchMessages(userId, "budget", null, 10).content();
+
+        assertThat(hits).hasSize(1);
+        String snippet = hits.get(0).snippet();
+        assertThat(snippet).contains("alert(&#39;x&#39;)&lt;/script&gt;", "&quot;<mark>budget</mark>&quot;",
+                "&lt;img src=x onerror=alert(1)&gt;", "&amp; more");
+        assertThat(snippet.replace("<mark>", "").replace("</mark>", "")).doesNotContain("<", ">");
+    }
+
+    @Test
+    @DisplayName("archived sessions drop out of search until they are restored")
+    void archivedSessionsAreNotSearched() {
+        UUID hot = chatService.createSession(new SessionCreate(userId, "hot")).id();
+        UUID archived = chatService.createSession(new SessionCreate(userId, "archived")).id();
+        chatService.addMessage(hot, new MessageCreate("user", "invoice for march", null));
+        chatService.addMessage(archived, new MessageCreate("user", "invoice for april", null));
+        assertThat(archiver.archive(archived, LocalDateTime.now().plusMinutes(1))).isEqualTo(1);
+
+        assertThat(chatService.searchMessages(userId, "invoice", null, 10).content())
+                .extracting(SearchHit::sessionId).containsExactly(hot);
+
+        archiver.restore(archived);
+        assertThat(chatService.searchMessages(userId, "invoice", null, 10).content())
+                .extracting(SearchHit::sessionId).containsExactlyInAnyOrder(hot, archived);
+    }
+}
@@ -0,0 +1,69 @@
+package com.assignment.chatstorage.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.ConcurrencyLimitProperties;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveLimitTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private AdaptiveLimit limit;
+
+    @BeforeEach
+    void setup() {
+        ConcurrencyLimitProperties props = new ConcurrencyLimitProperties();
+        props.setInitialLimit(50);
+        props.setMinLimit(10);
+        props.setMaxLimit(200);
+        limit = new AdaptiveLimit(props, clock::get);
+    }
+
+    @Test
+    @DisplayName("the limit grows while latency is steady and the permits are in use")
+    void growsUnderSteadyLatency() {
+        saturated(50, Duration.ofMillis(10));
+
+        assertThat(limit.limit()).isGreaterThan(50);
+    }
+
+    @Test
+    @DisplayName("a latency spike shrinks the limit towards the minimum, and it recovers afterwards")
+    void shrinksWhenLatencyRises() {
+        saturated(20, Duration.ofMillis(10));
+        int before = limit.limit();
+
+        saturated(50, Duration.ofMillis(500));
+        assertThat(limit.limit()).isEqualTo(10);
+
+        saturated(100, Duration.ofMillis(10));
+        assertThat(limit.limit()).isGreaterThan(before / 2);
+    }
+
+    @Test
+    @DisplayName("a lightly loaded window leaves the limit alone")
+    void ignoresLowLoad() {
+        windows(50, Duration.ofMillis(500), 5);
+
+        assertThat(limit.limit()).isEqualTo(50);
+    }
+
+    /** Feeds full windows of identical samples with every permit in use */
+    private void saturated(int count, Duration rtt) {
+        windows(count, rtt, -1);
+    }
+
+    /** Feeds full windows of identical samples; a negative in-flight count stands for the current limit */
+    private void windows(int count, Duration rtt, int inFlight) {
+        for (int w = 0; w < count; w++) {
+            for (int i = 0; i < 10; i++) {
+                clock.addAndGet(Duration.ofMillis(10).toNanos());
+                limit.onSample(rtt.toNanos(), inFlight < 0 ? limit.limit() : inFlight);
+            }
+        }
+    }
+}
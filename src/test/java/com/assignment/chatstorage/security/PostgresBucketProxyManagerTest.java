@@ -0,0 +1,83 @@
+package com.assignment.chatstorage.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.RateLimitProperties;
+import com.assignment.chatstorage.constants.HeaderConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Two {@link RateLimitFilter}s standing in for two instances share their buckets through the database. Needs a running
+ * Postgres (see docker-compose.yml): {@code CHAT_POSTGRES_IT=true mvn test -Dtest=PostgresBucketProxyManagerTest}
+ */
+@SpringBootTest(properties = "ratelimit.mode=distributed")
+@EnabledIfEnvironmentVariable(named = "CHAT_POSTGRES_IT", matches = "true")
+class PostgresBucketProxyManagerTest {
+
+    private static final FilterChain PASS = (request, response) -> { };
+
+    @Autowired
+    PostgresBucketProxyManager proxyManager;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    @DisplayName("instances draw from one shared bucket, overshooting by at most their unsynchronised tokens")
+    void limitIsClusterWide() throws Exception {
+        RateLimitProperties props = props(20, 3);
+        List<RateLimitFilter> instances = List.of(new RateLimitFilter(props, proxyManager, new SimpleMeterRegistry()), new RateLimitFilter(props, proxyManager, new SimpleMeterRegistry()));
+        String apiKey = "it-" + UUID.randomUUID();
+
+        int allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (call(instances.get(i % 2), apiKey) == 200) {
+                allowed++;
+            }
+        }
+
+        assertThat(allowed).isBetween(20, 20 + 2 * 3);
+        assertThat(jdbc.queryForObject("select count(*) from tbl_rate_limit_buckets where id = ?", Long.class, "api:" + apiKey))
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("expired shared buckets are deleted")
+    void removesExpiredBuckets() {
+        String id = "api:it-expired-" + UUID.randomUUID();
+        jdbc.update("insert into tbl_rate_limit_buckets (id, state, expires_at) values (?, null, ?)", id, System.currentTimeMillis() - 1);
+
+        proxyManager.removeExpired();
+
+        assertThat(jdbc.queryForObject("select count(*) from tbl_rate_limit_buckets where id = ?", Long.class, id)).isZero();
+    }
+
+    private static RateLimitProperties props(int capacity, long syncTokens) {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(capacity);
+        props.setRefillTokens(capacity);
+        props.setRefillPeriodSeconds(3600);
+        props.getDistributed().setSyncTokens(syncTokens);
+        props.getDistributed().setSyncInterval(Duration.ofSeconds(10));
+        return props;
+    }
+
+    private static int call(RateLimitFilter filter, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/session");
+        request.addHeader(HeaderConstants.API_KEY, apiKey);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, PASS);
+        return response.getStatus();
+    }
+}
@@ -5,26 +5,58 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadata;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.datasource.ReadYourWrites;
+import com.assignment.chatstorage.dto.ContextMode;
 import com.assignment.chatstorage.dto.Dtos;
-import com.assignment.chatstorage.entity.ChatMessage;
+import com.assignment.chatstorage.dto.FieldSelection;
+import com.assignment.chatstorage.dto.MessageCursor;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.SessionBulkOperation;
+import com.assignment.chatstorage.dto.MessageViewMode;
+import com.assignment.chatstorage.dto.SearchCursor;
 import com.assignment.chatstorage.entity.ChatSession;
 import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import com.assignment.chatstorage.metrics.ChatMetrics;
 import com.assignment.chatstorage.repository.ChatMessageRepository;
 import com.assignment.chatstorage.repository.ChatSessionRepository;
+import com.assignment.chatstorage.repository.MessageSearchRow;
 import com.assignment.chatstorage.service.impl.ChatServiceImpl;
+import com.assignment.chatstorage.service.impl.ContextStore;
+import com.assignment.chatstorage.service.impl.MessageWriter;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import com.assignment.chatstorage.util.UuidV7;
+import java.util.ArrayList;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -40,10 +72,57 @@ class ChatServiceImplTest {
     ChatSessionRepository sessionRepository;
     @Mock
     ChatMessageRepository messageRepository;
+    @Mock
+    MessageWriter messageWriter;
+    @Mock
+    SessionMetadataCache sessionCache;
+    @Mock
+    SessionArchiver sessionArchiver;
+    @Mock
+    SessionListCache sessionListCache;
+    @Mock
+    ContextStore contextStore;
+    @Mock
+    ReadYourWrites readYourWrites;
+    @Mock
+    ChatMetrics chatMetrics;
 
     @InjectMocks
     ChatServiceImpl service;
 
+    @BeforeEach
+    void liveSession() {
+        // Message reads resolve their session first; tests that need a deleted or archived one stub it explicitly
+        lenient().when(sessionCache.get(any())).thenAnswer(inv -> Optional.of(new SessionMetadata(inv.getArgument(0), "u", false)));
+    }
+
+    @Test
+    @DisplayName("message reads of a soft-deleted session stop before the messages table")
+    void listMessages_deletedSession() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", true)));
+
+        assertThatThrownBy(() -> service.listMessages(SID, null, null, 20, MessageListOptions.DEFAULT))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.SESSION_NOT_FOUND.getCode());
+        assertThatThrownBy(() -> service.exportMessages(SID, view -> { }))
+                .isInstanceOf(CustomGlobalException.class);
+        assertThatThrownBy(() -> service.requireSession(SID))
+                .isInstanceOf(CustomGlobalException.class);
+        verifyNoInteractions(messageRepository, sessionRepository);
+    }
+
+    @Test
+    @DisplayName("getSession hides soft-deleted sessions")
+    void getSession_deleted() {
+        var s = stored("t", 1L);
+        s.setIsDeleted(true);
+        given(sessionRepository.findById(ID)).willReturn(Optional.of(s));
+
+        assertThatThrownBy(() -> service.getSession(ID)).isInstanceOf(CustomGlobalException.class);
+    }
+
+    private static final MessageListOptions PREVIEW = new MessageListOptions(ContextMode.FULL, MessageViewMode.PREVIEW, FieldSelection.ALL);
+
     @Test
     @DisplayName("createSession saves and returns view")
     void createSession_ok() {
@@ -58,128 +137,483 @@ class ChatServiceImplTest {
         assertThat(view.userId()).isEqualTo("u1");
         assertThat(view.title()).isEqualTo("Welcome");
         verify(sessionRepository).save(any(ChatSession.class));
+        verify(sessionListCache).invalidate("u1");
     }
 
     @Test
     @DisplayName("listSessions filters by favorite when provided")
     void listSessions_withFavorite() {
-        var s = new ChatSession();
-        s.setUserId("u");
-        given(sessionRepository.findByUserIdAndFavoriteAndIsDeletedFalseOrderByUpdatedAtDesc("u", true))
-                .willReturn(List.of(s));
+        given(sessionRepository.findViewsByUserIdAndFavorite("u", true)).willReturn(List.of(session(true)));
 
         var list = service.listSessions("u", true);
 
         assertThat(list).hasSize(1);
-        verify(sessionRepository).findByUserIdAndFavoriteAndIsDeletedFalseOrderByUpdatedAtDesc("u", true);
+        verify(sessionRepository).findViewsByUserIdAndFavorite("u", true);
     }
 
     @Test
     @DisplayName("listSessions uses all sessions when favorite is null")
     void listSessions_allWhenNull() {
-        given(sessionRepository.findByUserIdAndIsDeletedFalseOrderByUpdatedAtDesc("u")).willReturn(List.of());
+        given(sessionRepository.findViewsByUserId("u")).willReturn(List.of());
 
         var list = service.listSessions("u", null);
 
         assertThat(list).isEmpty();
-        verify(sessionRepository).findByUserIdAndIsDeletedFalseOrderByUpdatedAtDesc("u");
+        verify(sessionRepository).findViewsByUserId("u");
     }
 
     @Test
-    @DisplayName("rename updates title and saves")
+    @DisplayName("listSessions serves both views from one cached list per user")
+    @SuppressWarnings("unchecked")
+    void listSessions_cached() {
+        given(sessionListCache.isEnabled()).willReturn(true);
+        given(sessionListCache.get(eq("u"), any())).willAnswer(inv -> ((Function<String, List<Dtos.SessionView>>) inv.getArgument(1)).apply("u"));
+        given(sessionRepository.findViewsByUserId("u")).willReturn(List.of(session(true), session(false)));
+
+        assertThat(service.listSessions("u", null)).hasSize(2);
+        assertThat(service.listSessions("u", true)).singleElement().extracting(Dtos.SessionView::isFavorite).isEqualTo(true);
+        assertThat(service.listSessions("u", false)).singleElement().extracting(Dtos.SessionView::isFavorite).isEqualTo(false);
+    }
+
+    @Test
+    @DisplayName("rename is one conditional update returning the row and its new version")
     void rename_ok() {
-        var s = new ChatSession();
-        s.setTitle("Old");
-        given(sessionRepository.findById(ID)).willReturn(Optional.of(s));
-        given(sessionRepository.save(s)).willReturn(s);
+        var s = stored("New", 4L);
+        given(sessionRepository.updateTitle(eq(ID), eq("New"), eq(ChatSessionRepository.ANY_VERSION), any())).willReturn(Optional.of(s));
 
-        var view = service.rename(ID, new Dtos.SessionRename("New"));
+        var result = service.rename(ID, new Dtos.SessionRename("New"), null);
 
-        assertThat(view.title()).isEqualTo("New");
-        verify(sessionRepository).save(s);
+        assertThat(result.value().title()).isEqualTo("New");
+        assertThat(result.version()).isEqualTo(4L);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).save(any());
+        verify(sessionCache).invalidate(ID);
+        verify(sessionListCache).invalidate("u");
     }
 
     @Test
     @DisplayName("rename throws when session not found")
     void rename_notFound() {
-        given(sessionRepository.findById(ID)).willReturn(Optional.empty());
+        given(sessionRepository.updateTitle(eq(ID), eq("x"), eq(ChatSessionRepository.ANY_VERSION), any())).willReturn(Optional.empty());
 
-        assertThatThrownBy(() -> service.rename(ID, new Dtos.SessionRename("x")))
-                .isInstanceOf(CustomGlobalException.class);
+        assertThatThrownBy(() -> service.rename(ID, new Dtos.SessionRename("x"), null))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.SESSION_NOT_FOUND.getCode());
     }
 
     @Test
-    @DisplayName("favorite toggles and saves")
+    @DisplayName("rename with a stale version fails with SESSION_MODIFIED when the session exists")
+    void rename_staleVersion() {
+        given(sessionRepository.updateTitle(eq(ID), eq("x"), eq(3L), any())).willReturn(Optional.empty());
+        given(sessionRepository.existsByIdAndIsDeletedFalse(ID)).willReturn(true);
+
+        assertThatThrownBy(() -> service.rename(ID, new Dtos.SessionRename("x"), 3L))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.SESSION_MODIFIED.getCode());
+        verify(sessionCache, never()).invalidate(any());
+    }
+
+    @Test
+    @DisplayName("favorite passes the expected version to the conditional update")
     void favorite_ok() {
-        var s = new ChatSession();
-        given(sessionRepository.findById(ID)).willReturn(Optional.of(s));
-        given(sessionRepository.save(s)).willReturn(s);
+        var s = stored("t", 2L);
+        s.setFavorite(true);
+        given(sessionRepository.updateFavorite(eq(ID), eq(true), eq(1L), any())).willReturn(Optional.of(s));
 
-        var view = service.favorite(ID, new Dtos.SessionFavorite(true));
+        var result = service.favorite(ID, new Dtos.SessionFavorite(true), 1L);
 
-        // Assert
-        assertThat(view.isFavorite()).isTrue();
-        verify(sessionRepository).save(s);
+        assertThat(result.value().isFavorite()).isTrue();
+        assertThat(result.version()).isEqualTo(2L);
+        verify(sessionCache).invalidate(ID);
     }
 
     @Test
-    @DisplayName("deleteSession sets isDeleted true and saves")
+    @DisplayName("deleteSession marks the row deleted in one statement")
     void deleteSession_ok() {
-        var s = new ChatSession();
-        given(sessionRepository.findById(ID)).willReturn(Optional.of(s));
+        given(sessionRepository.markDeleted(eq(ID), eq(ChatSessionRepository.ANY_VERSION), any())).willReturn(Optional.of(stored("t", 1L)));
 
-        service.deleteSession(ID);
+        service.deleteSession(ID, null);
 
-        assertThat(s.getIsDeleted()).isTrue();
-        verify(sessionRepository).save(s);
+        verify(sessionRepository, never()).save(any());
+        verify(sessionCache).invalidate(ID);
+        verify(sessionListCache).invalidate("u");
     }
 
     @Test
-    @DisplayName("addMessage saves and returns view")
-    void addMessage_ok() {
-        var s = new ChatSession();
-        given(sessionRepository.findById(SID)).willReturn(Optional.of(s));
-        given(messageRepository.save(any(ChatMessage.class))).willAnswer(inv -> inv.getArgument(0));
+    @DisplayName("deleteSession with a version throws SESSION_NOT_FOUND when the session is missing or already deleted")
+    void deleteSession_missingWithVersion() {
+        given(sessionRepository.markDeleted(eq(ID), eq(0L), any())).willReturn(Optional.empty());
+        given(sessionRepository.existsByIdAndIsDeletedFalse(ID)).willReturn(false);
+
+        assertThatThrownBy(() -> service.deleteSession(ID, 0L))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.SESSION_NOT_FOUND.getCode());
+    }
+
+    @Test
+    @DisplayName("bulkUpdate runs one statement for distinct ids and reports missing ones per id")
+    void bulkUpdate_ok() {
+        var s = stored("t", 5L);
+        given(sessionRepository.markDeletedAll(any(), any())).willReturn(List.of(s));
+
+        var result = service.bulkUpdate(new Dtos.SessionBulkRequest(SessionBulkOperation.DELETE, List.of(ID, SID, ID)));
+
+        assertThat(result.updated()).isEqualTo(1);
+        assertThat(result.results()).containsExactly(
+                new Dtos.SessionBulkItem(ID, Dtos.SessionBulkItem.Status.UPDATED, 5L),
+                new Dtos.SessionBulkItem(SID, Dtos.SessionBulkItem.Status.NOT_FOUND, null));
+        verify(sessionRepository).markDeletedAll(eq(Set.of(ID, SID)), any());
+        verify(sessionCache).invalidate(ID);
+        verify(sessionCache, never()).invalidate(SID);
+        verify(sessionListCache).invalidate("u");
+    }
+
+    @Test
+    @DisplayName("bulkUpdate maps unfavorite to a favorite=false update")
+    void bulkUpdate_unfavorite() {
+        given(sessionRepository.updateFavoriteAll(any(), eq(false), any())).willReturn(List.of());
+
+        var result = service.bulkUpdate(new Dtos.SessionBulkRequest(SessionBulkOperation.UNFAVORITE, List.of(ID)));
 
+        assertThat(result.results()).extracting(Dtos.SessionBulkItem::status).containsExactly(Dtos.SessionBulkItem.Status.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("addMessage writes through MessageWriter and returns view")
+    void addMessage_ok() {
         var req = new Dtos.MessageCreate("user", "hello", null);
+        given(messageWriter.write(SID, List.of(req))).willReturn(List.of(new Dtos.MessageView(ID, SID, "user", "hello", null, null, null)));
 
         var view = service.addMessage(SID, req);
 
         assertThat(view.createdBy()).isEqualTo("user");
         assertThat(view.content()).isEqualTo("hello");
-        verify(messageRepository).save(any(ChatMessage.class));
+        verify(messageWriter).write(SID, List.of(req));
     }
 
     @Test
-    @DisplayName("listMessages maps page and passes pageable with sort ASC by createdAt")
+    @DisplayName("addMessages delegates the whole batch to MessageWriter")
+    void addMessages_ok() {
+        var reqs = List.of(new Dtos.MessageCreate("user", "q", null), new Dtos.MessageCreate("assistant", "a", null));
+        given(messageWriter.write(SID, reqs)).willReturn(List.of());
+
+        service.addMessages(SID, reqs);
+
+        verify(messageWriter).write(SID, reqs);
+    }
+
+    @Test
+    @DisplayName("listMessages maps page, takes the total from the stored count and passes pageable with sort ASC by createdAt")
     void listMessages_ok() {
-        
-        var m1 = new ChatMessage();
-        m1.setCreatedBy("user");
-        m1.setContent("a");
-        
-        var m2 = new ChatMessage();
-        m2.setCreatedBy("assistant");
-        m2.setContent("b");
-        
-        var sess = new ChatSession();
-        m1.setSession(sess);
-        m2.setSession(sess);
-
-        var repoPage = new PageImpl<>(List.of(m1, m2));
-        given(messageRepository.findBySessionId(eq(SID), any(Pageable.class))).willReturn(repoPage);
-
-        var result = service.listMessages(SID, 2, 5);
+        var m1 = message("a", LocalDateTime.of(2025, 1, 1, 10, 0));
+        var m2 = message("b", LocalDateTime.of(2025, 1, 1, 10, 1));
+
+        given(sessionRepository.findMessageCountById(SID)).willReturn(Optional.of(12L));
+        given(messageRepository.findBySessionId(eq(SID), eq(true), eq(false), any(Pageable.class))).willReturn(List.of(m1, m2));
+
+        var result = service.listMessages(SID, 2, 5, MessageListOptions.DEFAULT);
 
         assertThat(result.getContent()).hasSize(2);
+        assertThat(result.getTotalElements()).isEqualTo(12);
         assertThat(result.getContent().get(0).content()).isEqualTo("a");
         ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
-        verify(messageRepository).findBySessionId(eq(SID), captor.capture());
+        verify(messageRepository).findBySessionId(eq(SID), eq(true), eq(false), captor.capture());
         var pageable = captor.getValue();
         assertThat(pageable.getPageNumber()).isEqualTo(2);
         assertThat(pageable.getPageSize()).isEqualTo(5);
         assertThat(pageable.getSort().getOrderFor("createdAt").getDirection()).isEqualTo(Sort.Direction.ASC);
     }
-}
 
+    @Test
+    @DisplayName("listMessages with cursor returns first page and nextCursor without counting")
+    void listMessages_cursorFirstPage() {
+        var m1 = message("a", LocalDateTime.of(2025, 1, 1, 10, 0));
+        var m2 = message("b", LocalDateTime.of(2025, 1, 1, 10, 1));
+        var m3 = message("c", LocalDateTime.of(2025, 1, 1, 10, 2));
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(true), eq(false), eq(Limit.of(3)))).willReturn(List.of(m1, m2, m3));
+
+        var result = service.listMessages(SID, null, null, 2, MessageListOptions.DEFAULT);
+
+        assertThat(result.content()).extracting(Dtos.MessageView::content).containsExactly("a", "b");
+        assertThat(result.prevCursor()).isNull();
+        var next = MessageCursor.decode(result.nextCursor());
+        assertThat(next.createdAt()).isEqualTo(m2.createdAt());
+        assertThat(next.id()).isEqualTo(m2.id());
+    }
+
+    @Test
+    @DisplayName("listMessages after cursor seeks by (createdAt, id) and ends without nextCursor")
+    void listMessages_cursorAfter() {
+        var m3 = message("c", LocalDateTime.of(2025, 1, 1, 10, 2));
+        var after = new MessageCursor(LocalDateTime.of(2025, 1, 1, 10, 1), ID);
+        given(messageRepository.findAfter(SID, after.createdAt(), after.id(), true, false, Limit.of(3))).willReturn(List.of(m3));
+
+        var result = service.listMessages(SID, after.encode(), null, 2, MessageListOptions.DEFAULT);
 
+        assertThat(result.content()).extracting(Dtos.MessageView::content).containsExactly("c");
+        assertThat(result.nextCursor()).isNull();
+        assertThat(MessageCursor.decode(result.prevCursor()).id()).isEqualTo(m3.id());
+    }
+
+    @Test
+    @DisplayName("listMessages before cursor returns rows in ascending order")
+    void listMessages_cursorBefore() {
+        var m1 = message("a", LocalDateTime.of(2025, 1, 1, 10, 0));
+        var m2 = message("b", LocalDateTime.of(2025, 1, 1, 10, 1));
+        var before = new MessageCursor(LocalDateTime.of(2025, 1, 1, 10, 2), ID);
+        given(messageRepository.findBefore(eq(SID), any(LocalDateTime.class), eq(before.createdAt()), eq(before.id()), eq(true), eq(false), eq(Limit.of(3)))).willReturn(List.of(m2, m1));
+
+        var result = service.listMessages(SID, null, before.encode(), 2, MessageListOptions.DEFAULT);
+
+        assertThat(result.content()).extracting(Dtos.MessageView::content).containsExactly("a", "b");
+        assertThat(result.prevCursor()).isNull();
+        assertThat(MessageCursor.decode(result.nextCursor()).id()).isEqualTo(m2.id());
+    }
+
+    @Test
+    @DisplayName("listMessages bounds the scan by the creation time encoded in a v7 session id")
+    void listMessages_v7SessionLowerBound() {
+        var sessionId = UuidV7.next();
+        var created = LocalDateTime.ofInstant(Instant.ofEpochMilli(UuidV7.timestamp(sessionId)), ZoneId.systemDefault());
+        given(messageRepository.findFirstBySession(eq(sessionId), any(LocalDateTime.class), eq(true), eq(false), eq(Limit.of(3)))).willReturn(List.of());
+
+        service.listMessages(sessionId, null, null, 2, MessageListOptions.DEFAULT);
+
+        var since = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(messageRepository).findFirstBySession(eq(sessionId), since.capture(), eq(true), eq(false), eq(Limit.of(3)));
+        assertThat(since.getValue()).isBefore(created).isAfter(created.minusDays(1));
+    }
+
+    @Test
+    @DisplayName("listMessages of an archived session pages over the archive merged with late hot rows")
+    void listMessages_archivedSession() {
+        var late = message("c", LocalDateTime.of(2025, 1, 1, 10, 2));
+        var a = new Dtos.MessageView(UUID.randomUUID(), SID, "user", "a", null, null, LocalDateTime.of(2025, 1, 1, 10, 0));
+        var b = new Dtos.MessageView(UUID.randomUUID(), SID, "user", "b", null, null, LocalDateTime.of(2025, 1, 1, 10, 1));
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false, true)));
+        given(sessionArchiver.read(SID)).willReturn(List.of(a, b));
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(true), eq(false), eq(Limit.unlimited()))).willReturn(List.of(late));
+
+        var first = service.listMessages(SID, null, null, 2, MessageListOptions.DEFAULT);
+        var second = service.listMessages(SID, first.nextCursor(), null, 2, MessageListOptions.DEFAULT);
+
+        assertThat(first.content()).extracting(Dtos.MessageView::content).containsExactly("a", "b");
+        assertThat(second.content()).extracting(Dtos.MessageView::content).containsExactly("c");
+        assertThat(second.nextCursor()).isNull();
+        var back = service.listMessages(SID, null, second.prevCursor(), 2, MessageListOptions.DEFAULT);
+        assertThat(back.content()).extracting(Dtos.MessageView::content).containsExactly("a", "b");
+    }
+
+    @Test
+    @DisplayName("a cache entry still showing an archived session as hot falls back to the archive once the hot read is empty")
+    void reads_staleArchivedFlag() {
+        var a = new Dtos.MessageView(UUID.randomUUID(), SID, "user", "a", null, null, LocalDateTime.of(2025, 1, 1, 10, 0));
+        given(sessionRepository.findMetadataById(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false, true)));
+        given(sessionArchiver.read(SID)).willReturn(List.of(a));
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(true), eq(false), any(Limit.class))).willReturn(List.of());
+        given(messageRepository.findBySessionId(eq(SID), eq(true), eq(false), any(Pageable.class))).willReturn(List.of());
+        given(messageRepository.findInSession(eq(SID), eq(a.id()), any(LocalDateTime.class), eq(true), eq(false))).willReturn(Optional.empty());
+        given(messageRepository.streamBySessionId(eq(SID), any(LocalDateTime.class), eq(true), eq(false))).willAnswer(inv -> Stream.empty());
+
+        var cursor = service.listMessages(SID, null, null, 2, MessageListOptions.DEFAULT);
+        var offset = service.listMessages(SID, 0, 10, MessageListOptions.DEFAULT);
+        var single = service.getMessage(SID, a.id());
+        var exported = new ArrayList<Dtos.MessageView>();
+        long count = service.exportMessages(SID, exported::add);
+
+        assertThat(cursor.content()).extracting(Dtos.MessageView::content).containsExactly("a");
+        assertThat(offset.getContent()).extracting(Dtos.MessageView::content).containsExactly("a");
+        assertThat(offset.getTotalElements()).isEqualTo(1);
+        assertThat(single.content()).isEqualTo("a");
+        assertThat(count).isEqualTo(1);
+        assertThat(exported).extracting(Dtos.MessageView::content).containsExactly("a");
+        verify(sessionCache, times(4)).evictLocal(SID);
+    }
+
+    @Test
+    @DisplayName("an empty hot read of a session that really is hot stays empty")
+    void reads_emptyHotSession() {
+        given(sessionRepository.findMetadataById(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false)));
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(true), eq(false), eq(Limit.of(3)))).willReturn(List.of());
+
+        var result = service.listMessages(SID, null, null, 2, MessageListOptions.DEFAULT);
+
+        assertThat(result.content()).isEmpty();
+        verifyNoInteractions(sessionArchiver);
+        verify(sessionCache, never()).evictLocal(any());
+    }
+
+    @Test
+    @DisplayName("listMessages resolves contexts with one lookup, or skips it when only hashes are asked for")
+    void listMessages_contextModes() {
+        var m1 = message("a", LocalDateTime.of(2025, 1, 1, 10, 0), "h1");
+        var m2 = message("b", LocalDateTime.of(2025, 1, 1, 10, 1), "h1");
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(true), eq(false), eq(Limit.of(3)))).willReturn(List.of(m1, m2));
+        given(contextStore.resolve(List.of("h1", "h1"))).willReturn(Map.of("h1", "{\"doc\":1}"));
+
+        var full = service.listMessages(SID, null, null, 2, MessageListOptions.DEFAULT);
+
+        assertThat(full.content()).extracting(Dtos.MessageView::context).containsExactly("{\"doc\":1}", "{\"doc\":1}");
+        verify(contextStore).resolve(any());
+
+        var hashes = service.listMessages(SID, null, null, 2,
+                new MessageListOptions(ContextMode.HASH, MessageViewMode.FULL, FieldSelection.ALL));
+
+        assertThat(hashes.content()).extracting(Dtos.MessageView::contextHash).containsExactly("h1", "h1");
+        assertThat(hashes.content()).extracting(Dtos.MessageView::context).containsOnlyNulls();
+        verifyNoMoreInteractions(contextStore);
+    }
+
+    @Test
+    @DisplayName("preview listing asks the query for content prefixes only and skips context lookups")
+    void listMessages_preview() {
+        var row = new Dtos.MessageView(ID, SID, "assistant", "x".repeat(Dtos.PREVIEW_LENGTH), null, "h1",
+                LocalDateTime.of(2025, 1, 1, 10, 0), 5_000, true);
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(false), eq(true), eq(Limit.of(3)))).willReturn(List.of(row));
+
+        var result = service.listMessages(SID, null, null, 2, PREVIEW);
+
+        assertThat(result.content()).containsExactly(row);
+        verifyNoMoreInteractions(contextStore);
+    }
+
+    @Test
+    @DisplayName("a field selection without content or context selects neither")
+    void listMessages_fieldSelection() {
+        var fields = FieldSelection.parse(Dtos.MessageView.class, "id,createdAt");
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(false), eq(false), eq(Limit.of(3)))).willReturn(List.of());
+
+        service.listMessages(SID, null, null, 2, new MessageListOptions(ContextMode.FULL, MessageViewMode.FULL, fields));
+
+        verifyNoMoreInteractions(contextStore);
+    }
+
+    @Test
+    @DisplayName("a preview listing without content, contentLength or truncated does not read the content column")
+    void listMessages_previewFieldSelection() {
+        var fields = FieldSelection.parse(Dtos.MessageView.class, "id,createdAt");
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(false), eq(false), eq(Limit.of(3)))).willReturn(List.of());
+
+        service.listMessages(SID, null, null, 2, new MessageListOptions(ContextMode.FULL, MessageViewMode.PREVIEW, fields));
+
+        verify(messageRepository).findFirstBySession(eq(SID), any(LocalDateTime.class), eq(false), eq(false), eq(Limit.of(3)));
+    }
+
+    @Test
+    @DisplayName("preview of an archived message cuts by characters, never inside a surrogate pair")
+    void listMessages_previewArchived() {
+        String content = "a" + "😀".repeat(Dtos.PREVIEW_LENGTH);
+        var archived = new Dtos.MessageView(UUID.randomUUID(), SID, "assistant", content, "ctx", "h1", LocalDateTime.of(2025, 1, 1, 10, 0));
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false, true)));
+        given(sessionArchiver.read(SID)).willReturn(List.of(archived));
+        given(messageRepository.findFirstBySession(eq(SID), any(LocalDateTime.class), eq(false), eq(true), eq(Limit.unlimited()))).willReturn(List.of());
+
+        var view = service.listMessages(SID, 0, 10, PREVIEW).getContent().get(0);
+
+        assertThat(view.content()).isEqualTo("a" + "😀".repeat(Dtos.PREVIEW_LENGTH - 1));
+        assertThat(view.contentLength()).isEqualTo(Dtos.PREVIEW_LENGTH + 1);
+        assertThat(view.truncated()).isTrue();
+        assertThat(view.context()).isNull();
+    }
+
+    @Test
+    @DisplayName("getMessage returns the full body with its context, or MESSAGE_NOT_FOUND")
+    void getMessage() {
+        var m = message("long answer", LocalDateTime.of(2025, 1, 1, 10, 0), "h1");
+        given(messageRepository.findInSession(eq(SID), eq(m.id()), any(LocalDateTime.class), eq(true), eq(false))).willReturn(Optional.of(m));
+        given(contextStore.resolve(List.of("h1"))).willReturn(Map.of("h1", "ctx"));
+
+        var view = service.getMessage(SID, m.id());
+
+        assertThat(view.content()).isEqualTo("long answer");
+        assertThat(view.context()).isEqualTo("ctx");
+        assertThatThrownBy(() -> service.getMessage(SID, ID))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.MESSAGE_NOT_FOUND.getCode());
+    }
+
+    @Test
+    @DisplayName("getContext throws CONTEXT_NOT_FOUND for an unknown hash")
+    void getContext_notFound() {
+        given(contextStore.resolve(List.of("abc"))).willReturn(Map.of());
+
+        assertThatThrownBy(() -> service.getContext("abc"))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.CONTEXT_NOT_FOUND.getCode());
+    }
+
+    @Test
+    @DisplayName("listMessages rejects malformed cursor")
+    void listMessages_invalidCursor() {
+        assertThatThrownBy(() -> service.listMessages(SID, "not-a-cursor", null, 2, MessageListOptions.DEFAULT))
+                .isInstanceOf(CustomGlobalException.class);
+    }
+
+    @Test
+    @DisplayName("searchMessages starts from the first cursor and returns a cursor past the last hit")
+    void searchMessages_firstPage() {
+        var r1 = searchRow(0.9f);
+        var r2 = searchRow(0.5f);
+        var r3 = searchRow(0.1f);
+        given(messageRepository.search("u1", "vacuum", SearchCursor.FIRST.rank(), SearchCursor.FIRST.messageId(), 3))
+                .willReturn(List.of(r1, r2, r3));
+
+        var result = service.searchMessages("u1", "vacuum", null, 2);
+
+        assertThat(result.content()).extracting(Dtos.SearchHit::messageId).containsExactly(r1.getMessageId(), r2.getMessageId());
+        var next = SearchCursor.decode(result.nextCursor());
+        assertThat(next.rank()).isEqualTo(0.5f);
+        assertThat(next.messageId()).isEqualTo(r2.getMessageId());
+    }
+
+    @Test
+    @DisplayName("searchMessages rejects blank queries")
+    void searchMessages_blankQuery() {
+        assertThatThrownBy(() -> service.searchMessages("u1", "  ", null, 20))
+                .isInstanceOf(CustomGlobalException.class);
+    }
+
+    @Test
+    @DisplayName("exportMessages streams every row to the sink")
+    void exportMessages_ok() {
+        var m1 = message("a", LocalDateTime.of(2025, 1, 1, 10, 0));
+        var m2 = message("b", LocalDateTime.of(2025, 1, 1, 10, 1));
+        given(messageRepository.streamBySessionId(eq(SID), any(LocalDateTime.class), eq(true), eq(false))).willReturn(Stream.of(m1, m2));
+
+        var seen = new ArrayList<String>();
+        long count = service.exportMessages(SID, view -> seen.add(view.content()));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(seen).containsExactly("a", "b");
+    }
+
+    private static MessageSearchRow searchRow(float rank) {
+        var row = mock(MessageSearchRow.class);
+        var id = UUID.randomUUID();
+        lenient().when(row.getMessageId()).thenReturn(id);
+        lenient().when(row.getSessionId()).thenReturn(SID);
+        lenient().when(row.getRank()).thenReturn(rank);
+        return row;
+    }
+
+    private static Dtos.MessageView message(String content, LocalDateTime createdAt) {
+        return message(content, createdAt, null);
+    }
+
+    private static Dtos.MessageView message(String content, LocalDateTime createdAt, String contextHash) {
+        return new Dtos.MessageView(UUID.randomUUID(), SID, "user", content, null, contextHash, createdAt);
+    }
+
+    private static ChatSession stored(String title, long version) {
+        var session = new ChatSession();
+        session.setId(ID);
+        session.setUserId("u");
+        session.setTitle(title);
+        session.setVersion(version);
+        return session;
+    }
+
+    private static Dtos.SessionView session(boolean favorite) {
+        return new Dtos.SessionView(UUID.randomUUID(), "u", "t", favorite, null, null, 0, null, 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.assignment.chatstorage.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.assignment.chatstorage.cache.ContextHashCache;
+import com.assignment.chatstorage.service.impl.ContextStore;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ContextStoreTest {
+
+    @Mock
+    JdbcTemplate jdbc;
+    @Mock
+    ContextHashCache knownHashes;
+
+    @InjectMocks
+    ContextStore store;
+
+    @Test
+    @DisplayName("hash is the lowercase hex SHA-256 of the UTF-8 payload")
+    void hash_sha256() {
+        assertThat(ContextStore.hash("abc"))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    @DisplayName("putAll inserts each distinct payload once and gzips only large ones")
+    @SuppressWarnings("unchecked")
+    void putAll_dedupesAndCompresses() {
+        String large = "{\"doc\":\"" + "retrieved passage ".repeat(200) + "\"}";
+
+        var hashes = store.putAll(Arrays.asList("small", large, "small", null));
+
+        assertThat(hashes).containsOnlyKeys("small", large);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(anyString(), rows.capture());
+        assertThat(rows.getValue()).hasSize(2);
+        for (Object[] row : rows.getValue()) {
+            boolean isLarge = row[0].equals(hashes.get(large));
+            assertThat(row[2]).isEqualTo(isLarge);
+            assertThat(((byte[]) row[1]).length).isLessThan(isLarge ? large.length() : 6);
+            // A payload stored again refreshes created_at only when the old one is past ContextHashCache.REMEMBER_FOR
+            assertThat(((Timestamp) row[5]).toLocalDateTime())
+                    .isEqualTo(((Timestamp) row[4]).toLocalDateTime().minus(ContextHashCache.REMEMBER_FOR));
+        }
+        verify(knownHashes).remember(hashes.get("small"));
+    }
+
+    @Test
+    @DisplayName("putAll skips the insert when every hash is already known")
+    void putAll_knownHashes() {
+        given(knownHashes.contains(eq(ContextStore.hash("ctx")))).willReturn(true);
+
+        var hashes = store.putAll(List.of("ctx"));
+
+        assertThat(hashes).containsEntry("ctx", ContextStore.hash("ctx"));
+        verifyNoInteractions(jdbc);
+    }
+}
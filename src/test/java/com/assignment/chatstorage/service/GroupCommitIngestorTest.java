@@ -0,0 +1,138 @@
+package com.assignment.chatstorage.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import com.assignment.chatstorage.config.IngestProperties;
+import com.assignment.chatstorage.dto.Dtos;
+import com.assignment.chatstorage.dto.Dtos.MessageView;
+import com.assignment.chatstorage.dto.Dtos.SessionMessageCreate;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
+import com.assignment.chatstorage.service.impl.GroupCommitIngestor;
+import com.assignment.chatstorage.service.impl.MessageWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class GroupCommitIngestorTest {
+
+    private static final UUID SID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID MISSING = UUID.fromString("00000000-0000-0000-0000-000000000009");
+
+    private final MessageWriter writer = mock(MessageWriter.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private GroupCommitIngestor ingestor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ingestor != null) {
+            ingestor.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent submits are committed together and each caller gets its own view")
+    void submit_groupsConcurrentCallers() throws Exception {
+        given(writer.write(anyList())).willAnswer(inv -> echo(inv.getArgument(0)));
+        ingestor = start(props(100, 50));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<MessageView>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String content = "m" + i;
+            results.add(pool.submit(() -> ingestor.submit(SID, new Dtos.MessageCreate("user", content, null))));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get().content()).isEqualTo("m" + i);
+        }
+        pool.shutdown();
+
+        var flushes = registry.get("chat.ingest.flush.size").summary();
+        assertThat(flushes.totalAmount()).isEqualTo(40);
+        assertThat(flushes.count()).isLessThan(40);
+    }
+
+    @Test
+    @DisplayName("a failing message is isolated and does not fail the rest of its group")
+    void submit_isolatesFailures() throws Exception {
+        given(writer.write(anyList())).willAnswer(inv -> {
+            List<SessionMessageCreate> reqs = inv.getArgument(0);
+            if (reqs.stream().anyMatch(r -> r.sessionId().equals(MISSING))) {
+                throw new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND);
+            }
+            return echo(reqs);
+        });
+        ingestor = start(props(100, 200));
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<MessageView> ok = pool.submit(() -> ingestor.submit(SID, new Dtos.MessageCreate("user", "ok", null)));
+        Future<MessageView> bad = pool.submit(() -> ingestor.submit(MISSING, new Dtos.MessageCreate("user", "bad", null)));
+
+        assertThat(ok.get().content()).isEqualTo("ok");
+        assertThatThrownBy(bad::get).hasCauseInstanceOf(CustomGlobalException.class);
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("submit rejects when the queue is full")
+    void submit_rejectsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        given(writer.write(anyList())).willAnswer(inv -> {
+            release.await();
+            return echo(inv.getArgument(0));
+        });
+        IngestProperties props = props(1, 0);
+        props.setQueueCapacity(1);
+        props.setOfferTimeoutMillis(0);
+        ingestor = start(props);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        // First message is taken by the writer and blocks in write(), the second fills the queue
+        Future<MessageView> inFlight = pool.submit(() -> ingestor.submit(SID, new Dtos.MessageCreate("user", "1", null)));
+        Thread.sleep(100);
+        Future<MessageView> queued = pool.submit(() -> ingestor.submit(SID, new Dtos.MessageCreate("user", "2", null)));
+        Thread.sleep(100);
+
+        assertThatThrownBy(() -> ingestor.submit(SID, new Dtos.MessageCreate("user", "3", null)))
+                .isInstanceOf(CustomGlobalException.class)
+                .extracting("code").isEqualTo(ErrorCode.INGEST_QUEUE_FULL.getCode());
+        assertThat(registry.get("chat.ingest.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(inFlight.get().content()).isEqualTo("1");
+        assertThat(queued.get().content()).isEqualTo("2");
+        pool.shutdown();
+    }
+
+    private GroupCommitIngestor start(IngestProperties props) {
+        GroupCommitIngestor started = new GroupCommitIngestor(writer, props, registry);
+        started.start();
+        return started;
+    }
+
+    private static IngestProperties props(int maxBatchSize, long maxDelayMillis) {
+        IngestProperties props = new IngestProperties();
+        props.setGroupCommitEnabled(true);
+        props.setMaxBatchSize(maxBatchSize);
+        props.setMaxDelayMillis(maxDelayMillis);
+        return props;
+    }
+
+    private static List<MessageView> echo(List<SessionMessageCreate> reqs) {
+        return reqs.stream()
+                .map(r -> new MessageView(UUID.randomUUID(), r.sessionId(), r.message().createdBy(), r.message().content(), null, null, null))
+                .toList();
+    }
+}
@@ -0,0 +1,42 @@
+package com.assignment.chatstorage.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.service.impl.MessageArchiveCodec;
+import com.assignment.chatstorage.service.impl.MessageArchiveCodec.ArchivedMessage;
+import com.assignment.chatstorage.util.UuidV7;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MessageArchiveCodecTest {
+
+    @Test
+    @DisplayName("decode(encode(messages)) returns the same messages, including nulls and microsecond timestamps")
+    void roundTrip() {
+        var messages = List.of(
+                new ArchivedMessage(UuidV7.next(), "user", "Grüße — 你好 👋", null,
+                        LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_000), null),
+                new ArchivedMessage(UuidV7.next(), "assistant", "", "{\"doc\":1}",
+                        LocalDateTime.of(1999, 12, 31, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0)));
+
+        assertThat(MessageArchiveCodec.decode(MessageArchiveCodec.encode(messages))).isEqualTo(messages);
+    }
+
+    @Test
+    @DisplayName("repetitive chat text compresses well below its raw size")
+    void compresses() {
+        var messages = new ArrayList<ArchivedMessage>();
+        int rawBytes = 0;
+        for (int i = 0; i < 200; i++) {
+            String content = "Here is how to configure the connection pool for service " + (i % 7) + ": set maximumPoolSize.";
+            rawBytes += content.length();
+            messages.add(new ArchivedMessage(UuidV7.next(), i % 2 == 0 ? "user" : "assistant", content, null,
+                    LocalDateTime.now(), null));
+        }
+
+        assertThat(MessageArchiveCodec.encode(messages).length).isLessThan(rawBytes / 3);
+    }
+}
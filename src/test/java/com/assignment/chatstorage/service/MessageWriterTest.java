@@ -0,0 +1,187 @@
+package com.assignment.chatstorage.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.assignment.chatstorage.cache.SessionListCache;
+import com.assignment.chatstorage.cache.SessionMetadata;
+import com.assignment.chatstorage.cache.SessionMetadataCache;
+import com.assignment.chatstorage.datasource.ReadYourWrites;
+import com.assignment.chatstorage.dto.Dtos;
+import com.assignment.chatstorage.entity.ChatMessage;
+import com.assignment.chatstorage.entity.ChatSession;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.repository.ChatMessageRepository;
+import com.assignment.chatstorage.repository.ChatSessionRepository;
+import com.assignment.chatstorage.service.impl.ContextStore;
+import com.assignment.chatstorage.service.impl.MessageWriter;
+import com.assignment.chatstorage.service.impl.SessionArchiver;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class MessageWriterTest {
+
+    private static final UUID ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Mock
+    ChatSessionRepository sessionRepository;
+    @Mock
+    ChatMessageRepository messageRepository;
+    @Mock
+    SessionMetadataCache sessionCache;
+    @Mock
+    SessionListCache sessionListCache;
+    @Mock
+    SessionArchiver sessionArchiver;
+    @Mock
+    ContextStore contextStore;
+    @Mock
+    ReadYourWrites readYourWrites;
+
+    @InjectMocks
+    MessageWriter writer;
+
+    @Test
+    @DisplayName("write resolves the session once and saves all rows in input order")
+    void write_singleSession() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false)));
+        given(sessionRepository.getReferenceById(SID)).willReturn(reference(SID));
+        given(messageRepository.saveAll(any())).willAnswer(MessageWriterTest::persisted);
+
+        var views = writer.write(SID, List.of(
+                new Dtos.MessageCreate("user", "q", null),
+                new Dtos.MessageCreate("assistant", "a", "ctx")));
+
+        assertThat(views).extracting(Dtos.MessageView::content).containsExactly("q", "a");
+        verify(sessionCache).get(SID);
+        verify(sessionRepository).getReferenceById(SID);
+    }
+
+    @Test
+    @DisplayName("write stores contexts by hash and keeps the payload on the returned view")
+    void write_storesContexts() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false)));
+        given(sessionRepository.getReferenceById(SID)).willReturn(reference(SID));
+        given(contextStore.putAll(any())).willReturn(Map.of("ctx", "h1"));
+        given(messageRepository.saveAll(any())).willAnswer(MessageWriterTest::persisted);
+
+        var views = writer.write(SID, List.of(
+                new Dtos.MessageCreate("user", "q", "ctx"),
+                new Dtos.MessageCreate("assistant", "a", null)));
+
+        assertThat(views).extracting(Dtos.MessageView::contextHash).containsExactly("h1", null);
+        assertThat(views).extracting(Dtos.MessageView::context).containsExactly("ctx", null);
+        verify(contextStore).putAll(Arrays.asList("ctx", null));
+    }
+
+    @Test
+    @DisplayName("write restores an archived session before adding to it")
+    void write_archivedSession() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false, true)));
+        given(sessionRepository.getReferenceById(SID)).willReturn(reference(SID));
+        given(messageRepository.saveAll(any())).willAnswer(MessageWriterTest::persisted);
+
+        writer.write(SID, List.of(new Dtos.MessageCreate("user", "back again", null)));
+
+        verify(sessionArchiver).restore(SID);
+    }
+
+    @Test
+    @DisplayName("write adds count, UTF-8 bytes and latest time to the session counters and evicts the user's list")
+    void write_recordsActivity() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", false)));
+        given(sessionRepository.getReferenceById(SID)).willReturn(reference(SID));
+        given(messageRepository.saveAll(any())).willAnswer(MessageWriterTest::persisted);
+
+        writer.write(SID, List.of(
+                new Dtos.MessageCreate("user", "héllo", null),
+                new Dtos.MessageCreate("assistant", "ok", null)));
+
+        verify(sessionRepository).recordActivity(SID, 2, 8, CREATED_AT);
+        verify(sessionListCache).invalidate("u");
+    }
+
+    @Test
+    @DisplayName("write rejects a soft-deleted session")
+    void write_deletedSession() {
+        given(sessionCache.get(SID)).willReturn(Optional.of(new SessionMetadata(SID, "u", true)));
+
+        assertThatThrownBy(() -> writer.write(SID, List.of(new Dtos.MessageCreate("user", "q", null))))
+                .isInstanceOf(CustomGlobalException.class);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("write throws when session not found")
+    void write_notFound() {
+        given(sessionCache.get(SID)).willReturn(Optional.empty());
+
+        assertThatThrownBy(() -> writer.write(SID, List.of(new Dtos.MessageCreate("user", "q", null))))
+                .isInstanceOf(CustomGlobalException.class);
+    }
+
+    @Test
+    @DisplayName("write across sessions fails when any session is missing")
+    void write_multiSessionMissing() {
+        given(sessionCache.getAll(any())).willReturn(Map.of(SID, new SessionMetadata(SID, "u", false)));
+
+        var reqs = List.of(
+                new Dtos.SessionMessageCreate(SID, new Dtos.MessageCreate("user", "q", null)),
+                new Dtos.SessionMessageCreate(ID, new Dtos.MessageCreate("user", "q", null)));
+
+        assertThatThrownBy(() -> writer.write(reqs)).isInstanceOf(CustomGlobalException.class);
+    }
+
+    @Test
+    @DisplayName("write across sessions maps each row to its own session")
+    void write_multiSession() {
+        given(sessionCache.getAll(any())).willReturn(Map.of(
+                SID, new SessionMetadata(SID, "u", false),
+                ID, new SessionMetadata(ID, "u", false)));
+        given(sessionRepository.getReferenceById(SID)).willReturn(reference(SID));
+        given(sessionRepository.getReferenceById(ID)).willReturn(reference(ID));
+        given(messageRepository.saveAll(any())).willAnswer(MessageWriterTest::persisted);
+
+        var views = writer.write(List.of(
+                new Dtos.SessionMessageCreate(ID, new Dtos.MessageCreate("user", "first", null)),
+                new Dtos.SessionMessageCreate(SID, new Dtos.MessageCreate("user", "second", null))));
+
+        assertThat(views).extracting(Dtos.MessageView::sessionId).containsExactly(ID, SID);
+        InOrder order = inOrder(sessionRepository);
+        order.verify(sessionRepository).recordActivity(ID, 1, 5, CREATED_AT);
+        order.verify(sessionRepository).recordActivity(SID, 1, 6, CREATED_AT);
+    }
+
+    private static ChatSession reference(UUID id) {
+        var session = new ChatSession();
+        session.setId(id);
+        return session;
+    }
+
+    /** Stands in for saveAll: the auditing listener stamps createdAt when a message is persisted */
+    private static List<ChatMessage> persisted(InvocationOnMock invocation) {
+        List<ChatMessage> messages = invocation.getArgument(0);
+        messages.forEach(message -> message.setCreatedAt(CREATED_AT));
+        return messages;
+    }
+}
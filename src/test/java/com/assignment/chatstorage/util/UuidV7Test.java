@@ -0,0 +1,72 @@
+package com.assignment.chatstorage.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UuidV7Test {
+
+    @Test
+    @DisplayName("ids carry version 7, the RFC variant and the current timestamp")
+    void next_layout() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        // The sequence may borrow from the next millisecond under heavy load
+        assertThat(UuidV7.timestamp(id)).isBetween(before, after + 1);
+    }
+
+    @Test
+    @DisplayName("ids are strictly increasing within a thread, also inside one millisecond")
+    void next_monotonic() {
+        UUID prev = UuidV7.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = UuidV7.next();
+            assertThat(compareUnsigned(next, prev)).isPositive();
+            prev = next;
+        }
+    }
+
+    @Test
+    @DisplayName("ids are unique and per-thread ordered when generated concurrently")
+    void next_concurrent() throws Exception {
+        Set<UUID> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(pool.submit(() -> {
+                UUID prev = UuidV7.next();
+                boolean ordered = seen.add(prev);
+                for (int i = 0; i < 50_000; i++) {
+                    UUID next = UuidV7.next();
+                    ordered &= seen.add(next) && compareUnsigned(next, prev) > 0;
+                    prev = next;
+                }
+                return ordered;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertThat(result.get()).isTrue();
+        }
+        pool.shutdown();
+        assertThat(seen).hasSize(8 * 50_001);
+    }
+
+    /** Byte-wise order, as Postgres compares uuid values. */
+    private static int compareUnsigned(UUID a, UUID b) {
+        int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,65 @@
+package com.assignment.chatstorage.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.assignment.chatstorage.config.RateLimitProperties;
+import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.security.ApiKeyFilter;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ApiKeyFilterTest {
+
+    private ApiKeyFilter filter;
+
+    @BeforeEach
+    void setup() {
+        RateLimitProperties props = new RateLimitProperties();
+        RateLimitProperties.Tier partner = new RateLimitProperties.Tier();
+        partner.setApiKeys(List.of("partner-key"));
+        props.setTiers(Map.of("partner", partner));
+        filter = new ApiKeyFilter("service-key", props);
+    }
+
+    @Test
+    @DisplayName("a tier key calls the API but gets 403 on the actuator operations that delete data")
+    void tierKeyCannotRunActuatorOperations() throws Exception {
+        assertThat(call("GET", "/api/v1/session", "partner-key").passed()).isTrue();
+
+        for (String path : List.of("/actuator/retention", "/actuator/purge", "/actuator/prometheus")) {
+            Result result = call("POST", path, "partner-key");
+            assertThat(result.passed()).as(path).isFalse();
+            assertThat(result.status()).as(path).isEqualTo(403);
+        }
+    }
+
+    @Test
+    @DisplayName("the service key reaches the actuator; health needs no key; unknown keys get 401")
+    void serviceKeyReachesActuator() throws Exception {
+        assertThat(call("POST", "/actuator/retention", "service-key").passed()).isTrue();
+        assertThat(call("GET", "/actuator/health", null).passed()).isTrue();
+        Result unknown = call("POST", "/actuator/retention", "unknown-key");
+        assertThat(unknown.passed()).isFalse();
+        assertThat(unknown.status()).isEqualTo(401);
+    }
+
+    private Result call(String method, String path, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        if (apiKey != null) {
+            request.addHeader(HeaderConstants.API_KEY, apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return new Result(chain.getRequest() != null, response.getStatus());
+    }
+
+    private record Result(boolean passed, int status) {
+    }
+}
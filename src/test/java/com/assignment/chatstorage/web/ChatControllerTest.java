@@ -1,25 +1,46 @@
 package com.assignment.chatstorage.web;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.dto.ContextMode;
+import com.assignment.chatstorage.dto.FieldSelection;
+import com.assignment.chatstorage.dto.MessageListOptions;
+import com.assignment.chatstorage.dto.MessageViewMode;
+import com.assignment.chatstorage.dto.SessionBulkOperation;
+import com.assignment.chatstorage.dto.CursorPage;
 import com.assignment.chatstorage.dto.Dtos;
+import com.assignment.chatstorage.dto.Dtos.ContextView;
 import com.assignment.chatstorage.dto.Dtos.MessageView;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
+import com.assignment.chatstorage.dto.Versioned;
+import com.assignment.chatstorage.exception.CustomGlobalException;
+import com.assignment.chatstorage.exception.ErrorCode;
 import com.assignment.chatstorage.service.ChatService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -28,11 +49,13 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -49,12 +72,13 @@ class ChatControllerTest {
 
     @BeforeEach
     void setup() {
-        ChatController controller = new ChatController(chatService);
+        this.objectMapper = new ObjectMapper();
+        ChatController controller = new ChatController(chatService, objectMapper);
 
         this.mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
+                .setConversionService(new ApplicationConversionService())
                 .build();
-        this.objectMapper = new ObjectMapper();
     }
 
     private static final String API_KEY = "change-me-please";
@@ -64,7 +88,7 @@ class ChatControllerTest {
     @DisplayName("create returns 200 with body when valid")
     void create_ok() throws Exception {
         var req = new Dtos.SessionCreate("u1", "t");
-        given(chatService.createSession(any())).willReturn(new SessionView(null, "u1", "t", false, null, null));
+        given(chatService.createSession(any())).willReturn(new SessionView(null, "u1", "t", false, null, null, 0, null, 0));
 
         mockMvc.perform(post("/api/v1/session")
                         .header(HeaderConstants.API_KEY, API_KEY)
@@ -87,20 +111,73 @@ class ChatControllerTest {
     @Test
     @DisplayName("rename updates title")
     void rename_ok() throws Exception {
-        given(chatService.rename(eq(ID), any())).willReturn(new SessionView(null, "u", "n", false, null, null));
+        given(chatService.rename(eq(ID), any(), isNull()))
+                .willReturn(new Versioned<>(new SessionView(null, "u", "n", false, null, null, 0, null, 0), 1));
 
         mockMvc.perform(patch("/api/v1/session/{id}/rename", ID.toString())
                         .header(HeaderConstants.API_KEY, API_KEY)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"title\":\"n\"}"))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("$.title").value("n"));
     }
 
+    @Test
+    @DisplayName("rename passes the If-Match version and returns the new one as ETag")
+    void rename_ifMatch() throws Exception {
+        given(chatService.rename(eq(ID), any(), eq(3L)))
+                .willReturn(new Versioned<>(new SessionView(null, "u", "n", false, null, null, 0, null, 0), 4));
+
+        mockMvc.perform(patch("/api/v1/session/{id}/rename", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"n\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    @DisplayName("rename with a stale version returns 412")
+    void rename_stale() throws Exception {
+        given(chatService.rename(eq(ID), any(), eq(3L))).willThrow(new CustomGlobalException(ErrorCode.SESSION_MODIFIED));
+
+        mockMvc.perform(patch("/api/v1/session/{id}/rename", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"n\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code").value("ERR_CS_SES_02"));
+    }
+
+    @Test
+    @DisplayName("a weak If-Match tag fails the precondition without calling the service")
+    void delete_weakIfMatch() throws Exception {
+        mockMvc.perform(delete("/api/v1/session/{id}", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\""))
+                .andExpect(status().isPreconditionFailed());
+        Mockito.verifyNoInteractions(chatService);
+    }
+
+    @Test
+    @DisplayName("get returns the session with its version as ETag")
+    void get_ok() throws Exception {
+        given(chatService.getSession(ID)).willReturn(new Versioned<>(new SessionView(ID, "u", "t", false, null, null, 2, null, 10), 7));
+
+        mockMvc.perform(get("/api/v1/session/{id}", ID.toString()).header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7\""))
+                .andExpect(jsonPath("$.messageCount").value(2));
+    }
+
     @Test
     @DisplayName("favorite toggles flag")
     void favorite_ok() throws Exception {
-        given(chatService.favorite(eq(ID), any())).willReturn(new SessionView(null, "u", "t", true, null, null));
+        given(chatService.favorite(eq(ID), any(), isNull()))
+                .willReturn(new Versioned<>(new SessionView(null, "u", "t", true, null, null, 0, null, 0), 1));
 
         mockMvc.perform(patch("/api/v1/session/{id}/favorite", ID.toString())
                         .header(HeaderConstants.API_KEY, API_KEY)
@@ -115,13 +192,53 @@ class ChatControllerTest {
     void delete_ok() throws Exception {
         mockMvc.perform(delete("/api/v1/session/{id}", ID.toString()).header(HeaderConstants.API_KEY, API_KEY))
                 .andExpect(status().isNoContent());
-        Mockito.verify(chatService).deleteSession(ID);
+        Mockito.verify(chatService).deleteSession(ID, null);
+    }
+
+    @Test
+    @DisplayName("bulk returns a result per id")
+    void bulk_ok() throws Exception {
+        given(chatService.bulkUpdate(any())).willReturn(new Dtos.SessionBulkResult(SessionBulkOperation.FAVORITE, 1,
+                List.of(new Dtos.SessionBulkItem(ID, Dtos.SessionBulkItem.Status.UPDATED, 2L))));
+
+        mockMvc.perform(post("/api/v1/session/bulk")
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operation\":\"favorite\",\"ids\":[\"" + ID + "\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("UPDATED"))
+                .andExpect(jsonPath("$.results[0].version").value(2));
+    }
+
+    @Test
+    @DisplayName("bulk with an unknown operation is a 400, not a server error")
+    void bulk_unknownOperation() throws Exception {
+        mockMvc.perform(post("/api/v1/session/bulk")
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operation\":\"ARCHIVE\",\"ids\":[\"" + ID + "\"]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("bulk rejects more ids than the limit")
+    void bulk_tooManyIds() throws Exception {
+        var ids = IntStream.rangeClosed(0, Dtos.MAX_BULK_SESSIONS)
+                .mapToObj(i -> "\"" + UUID.randomUUID() + "\"").toList();
+
+        mockMvc.perform(post("/api/v1/session/bulk")
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operation\":\"DELETE\",\"ids\":[" + String.join(",", ids) + "]}"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(chatService);
     }
 
     @Test
     @DisplayName("addMessage returns message view")
     void addMessage_ok() throws Exception {
-        given(chatService.addMessage(eq(ID), any())).willReturn(new MessageView(null, null, "user", "c", null, null));
+        given(chatService.addMessage(eq(ID), any())).willReturn(new MessageView(null, null, "user", "c", null, null, null));
 
         mockMvc.perform(post("/api/v1/session/{id}/messages", ID.toString())
                         .header(HeaderConstants.API_KEY, API_KEY)
@@ -131,18 +248,45 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.createdBy").value("user"));
     }
 
+    @Test
+    @DisplayName("addMessages batch returns views in input order")
+    void addMessages_batch() throws Exception {
+        given(chatService.addMessages(eq(ID), any())).willReturn(List.of(
+                new MessageView(null, null, "user", "q", null, null, null),
+                new MessageView(null, null, "assistant", "a", null, null, null)));
+
+        mockMvc.perform(post("/api/v1/session/{id}/messages/batch", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"messages\":[{\"createdBy\":\"user\",\"content\":\"q\"},{\"createdBy\":\"assistant\",\"content\":\"a\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].createdBy").value("assistant"));
+    }
+
+    @Test
+    @DisplayName("addMessages batch validates each element")
+    void addMessages_batchInvalid() throws Exception {
+        mockMvc.perform(post("/api/v1/session/{id}/messages/batch", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"messages\":[{\"createdBy\":\"user\",\"content\":\"\"}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors['messages[0].content']").exists());
+    }
+
     @Test
     @DisplayName("listMessages returns a page structure")
     void listMessages_ok() throws Exception {
 
         var content = List.of(
-                new MessageView(null, null, "assistant", "c1", null, null),
-                new MessageView(null, null, "user", "c2", null, null)
+                new MessageView(null, null, "assistant", "c1", null, null, null),
+                new MessageView(null, null, "user", "c2", null, null, null)
         );
 
         var page = new PageImpl<>(content, PageRequest.of(0, 3), 2);
 
-        given(chatService.listMessages(eq(ID), eq(0), eq(3))).willReturn(page);
+        given(chatService.listMessages(eq(ID), eq(0), eq(3), eq(MessageListOptions.DEFAULT))).willReturn(page);
 
         mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
                         .header(HeaderConstants.API_KEY, API_KEY)
@@ -157,4 +301,194 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.content[0].createdBy").value("assistant"))
                 .andExpect(jsonPath("$.content[1].createdBy").value("user"));
     }
+
+    @Test
+    @DisplayName("listMessages without page or cursor keeps the offset paging shape, page 1 by default")
+    void listMessages_defaultsToOffset() throws Exception {
+        var content = List.of(new MessageView(null, null, "user", "c1", null, null, null));
+        given(chatService.listMessages(eq(ID), eq(1), eq(20), eq(MessageListOptions.DEFAULT)))
+                .willReturn(new PageImpl<>(content, PageRequest.of(1, 20), 21));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page").value(1))
+                .andExpect(jsonPath("$.totalElements").value(21))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("listMessages with cursor=true starts cursor paging at the first page")
+    void listMessages_cursorFirstPage() throws Exception {
+        given(chatService.listMessages(ID, null, null, 20, MessageListOptions.DEFAULT)).willReturn(new CursorPage<>(List.of(), 20, null, null));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("cursor", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.content", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("listMessages with a cursor uses cursor paging")
+    void listMessages_cursor() throws Exception {
+        var content = List.of(new MessageView(null, null, "user", "c1", null, null, null));
+        given(chatService.listMessages(ID, "abc", null, 20, MessageListOptions.DEFAULT)).willReturn(new CursorPage<>(content, 20, "next", "prev"));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("after", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(20))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.prevCursor").value("prev"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.content", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("search returns ranked hits with snippet and next cursor")
+    void search_ok() throws Exception {
+        var hit = new Dtos.SearchHit(ID, UUID.randomUUID(), null, 0.6f, "about <mark>postgres</mark> indexes");
+        given(chatService.searchMessages("u1", "postgres", null, 20)).willReturn(new CursorPage<>(List.of(hit), 20, "next", null));
+
+        mockMvc.perform(get("/api/v1/session/search")
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("userId", "u1")
+                        .param("q", "postgres"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].sessionId").value(ID.toString()))
+                .andExpect(jsonPath("$.content[0].snippet").value("about <mark>postgres</mark> indexes"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @DisplayName("search with blank query returns 400")
+    void search_blankQuery() throws Exception {
+        given(chatService.searchMessages("u1", " ", null, 20))
+                .willThrow(new CustomGlobalException(ErrorCode.INVALID_SEARCH_QUERY));
+
+        mockMvc.perform(get("/api/v1/session/search")
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("userId", "u1")
+                        .param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("context by hash is served as an immutable, cacheable resource")
+    void context_ok() throws Exception {
+        given(chatService.getContext("abc")).willReturn(new ContextView("abc", "{\"doc\":1}"));
+
+        mockMvc.perform(get("/api/v1/session/contexts/{hash}", "abc").header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(header().string("Cache-Control", containsString("immutable")))
+                .andExpect(jsonPath("$.context").value("{\"doc\":1}"));
+    }
+
+    @Test
+    @DisplayName("list messages accepts view=preview in lower case")
+    void listMessages_preview() throws Exception {
+        var content = List.of(new MessageView(null, ID, "assistant", "Sure, here", null, null, null, 4_000, true));
+        given(chatService.listMessages(ID, null, null, 20,
+                new MessageListOptions(ContextMode.FULL, MessageViewMode.PREVIEW, FieldSelection.ALL)))
+                .willReturn(new CursorPage<>(content, 20, null, null));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("cursor", "true")
+                        .param("view", "preview"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].contentLength").value(4_000))
+                .andExpect(jsonPath("$.content[0].truncated").value(true));
+    }
+
+    @Test
+    @DisplayName("list messages with fields serializes only the requested fields")
+    void listMessages_fields() throws Exception {
+        var fields = FieldSelection.parse(MessageView.class, "id,content");
+        var content = List.of(new MessageView(ID, ID, "user", "c1", null, null, null));
+        given(chatService.listMessages(ID, null, null, 20, new MessageListOptions(ContextMode.FULL, MessageViewMode.FULL, fields)))
+                .willReturn(new CursorPage<>(content, 20, null, null));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("cursor", "true")
+                        .param("fields", "content, id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(ID.toString()))
+                .andExpect(jsonPath("$.content[0].content").value("c1"))
+                .andExpect(jsonPath("$.content[0].createdBy").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("list messages rejects unknown fields with 400")
+    void listMessages_unknownField() throws Exception {
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("fields", "id,password"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("ERR_CS_PAGE_02"));
+    }
+
+    @Test
+    @DisplayName("get message returns 404 with MESSAGE_NOT_FOUND")
+    void getMessage_notFound() throws Exception {
+        var messageId = UUID.fromString("00000000-0000-0000-0000-000000000009");
+        given(chatService.getMessage(ID, messageId)).willThrow(new CustomGlobalException(ErrorCode.MESSAGE_NOT_FOUND));
+
+        mockMvc.perform(get("/api/v1/session/{id}/messages/{messageId}", ID.toString(), messageId.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code").value("ERR_CS_MSG_01"));
+    }
+
+    @Test
+    @DisplayName("list messages rejects an unknown context mode with 400")
+    void listMessages_badContextMode() throws Exception {
+        mockMvc.perform(get("/api/v1/session/{id}/messages", ID.toString())
+                        .header(HeaderConstants.API_KEY, API_KEY)
+                        .param("page", "0")
+                        .param("context", "bogus"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("export streams one JSON document per line")
+    @SuppressWarnings("unchecked")
+    void export_ndjson() throws Exception {
+        given(chatService.exportMessages(eq(ID), any())).willAnswer(inv -> {
+            Consumer<MessageView> sink = inv.getArgument(1);
+            sink.accept(new MessageView(null, ID, "user", "q", null, null, null));
+            sink.accept(new MessageView(null, ID, "assistant", "a", null, null, null));
+            return 2L;
+        });
+
+        var result = mockMvc.perform(get("/api/v1/session/{id}/export", ID.toString()).header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        var body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        var lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[1]).get("content").asText()).isEqualTo("a");
+        verify(chatService).requireSession(ID);
+        verify(chatService, never()).getSession(any());
+    }
+
+    @Test
+    @DisplayName("export returns 404 before streaming when session is missing")
+    void export_notFound() throws Exception {
+        willThrow(new CustomGlobalException(ErrorCode.SESSION_NOT_FOUND)).given(chatService).requireSession(ID);
+
+        mockMvc.perform(get("/api/v1/session/{id}/export", ID.toString()).header(HeaderConstants.API_KEY, API_KEY))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code").value("ERR_CS_SES_01"));
+    }
 }
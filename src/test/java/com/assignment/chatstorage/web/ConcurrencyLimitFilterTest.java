@@ -0,0 +1,133 @@
+package com.assignment.chatstorage.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.assignment.chatstorage.config.ConcurrencyLimitProperties;
+import com.assignment.chatstorage.constants.HeaderConstants;
+import com.assignment.chatstorage.dto.Dtos.SessionCreate;
+import com.assignment.chatstorage.dto.Dtos.SessionView;
+import com.assignment.chatstorage.exception.ErrorCode;
+import com.assignment.chatstorage.security.ConcurrencyLimitFilter;
+import com.assignment.chatstorage.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+class ConcurrencyLimitFilterTest {
+
+    private MockMvc mockMvc;
+    private ChatService chatService;
+    private ConcurrencyLimitFilter filter;
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        chatService = Mockito.mock(ChatService.class);
+        // A fixed limit of 2 of which reads may take one
+        ConcurrencyLimitProperties props = new ConcurrencyLimitProperties();
+        props.setInitialLimit(2);
+        props.setMinLimit(2);
+        props.setMaxLimit(2);
+        props.setReadShare(0.5);
+        registry = new SimpleMeterRegistry();
+        filter = new ConcurrencyLimitFilter(props, registry);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ChatController(chatService, new ObjectMapper()))
+                .addFilter(filter)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    @DisplayName("with the read share taken, reads get a fast 503 with Retry-After while writes still go through")
+    void shedsReadsBeforeWrites() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(chatService.listSessions(Mockito.eq("slow"), Mockito.any())).thenAnswer(inv -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+        Mockito.when(chatService.createSession(Mockito.any()))
+                .thenReturn(new SessionView(null, "u1", "t", false, null, null, 0, null, 0));
+        CompletableFuture<Void> slowRead = CompletableFuture.runAsync(() -> {
+            try {
+                mockMvc.perform(get("/api/v1/session").param("userId", "slow")).andExpect(status().isOk());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            mockMvc.perform(get("/api/v1/session").param("userId", "u1"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HeaderConstants.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.code").value(ErrorCode.OVERLOADED.getCode()));
+            mockMvc.perform(post("/api/v1/session")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(new ObjectMapper().writeValueAsString(new SessionCreate("u1", "t"))))
+                    .andExpect(status().isOk());
+            assertThat(filter.inFlight()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+        slowRead.get(10, TimeUnit.SECONDS);
+
+        assertThat(filter.inFlight()).isZero();
+        assertThat(registry.get("chat.concurrency.rejected").tag("priority", "read").counter().count()).isEqualTo(1);
+        assertThat(registry.get("chat.concurrency.rejected").tag("priority", "write").counter().count()).isZero();
+        assertThat(registry.get("chat.concurrency.limit").gauge().value()).isEqualTo(2);
+        mockMvc.perform(get("/api/v1/session").param("userId", "u1")).andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("an export holds its permit while it streams, until the async response completes")
+    void exportHoldsPermitUntilComplete() throws Exception {
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.when(chatService.exportMessages(Mockito.any(), Mockito.any())).thenAnswer(inv -> {
+            streaming.countDown();
+            finish.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+
+        MvcResult export = mockMvc.perform(get("/api/v1/session/{id}/export", UUID.randomUUID()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(streaming.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            // The servlet thread has returned, but the stream is still running and counts against the read share
+            assertThat(filter.inFlight()).isEqualTo(1);
+            mockMvc.perform(get("/api/v1/session").param("userId", "u1")).andExpect(status().isServiceUnavailable());
+        } finally {
+            finish.countDown();
+        }
+        export.getAsyncResult(10_000);
+        assertThat(filter.inFlight()).isEqualTo(1);
+
+        // The container completes the async context once the response is written
+        ((MockAsyncContext) export.getRequest().getAsyncContext()).complete();
+        assertThat(filter.inFlight()).isZero();
+        mockMvc.perform(get("/api/v1/session").param("userId", "u1")).andExpect(status().isOk());
+    }
+}
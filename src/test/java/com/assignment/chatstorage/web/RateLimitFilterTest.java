@@ -1,5 +1,7 @@
 package com.assignment.chatstorage.web;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -9,9 +11,17 @@ import com.assignment.chatstorage.config.RateLimitProperties;
 import com.assignment.chatstorage.constants.HeaderConstants;
 import com.assignment.chatstorage.dto.Dtos;
 import com.assignment.chatstorage.dto.Dtos.SessionView;
+import com.assignment.chatstorage.dto.SessionBulkOperation;
+import com.assignment.chatstorage.security.ApiKeyFilter;
 import com.assignment.chatstorage.security.RateLimitFilter;
 import com.assignment.chatstorage.service.ChatService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -25,12 +35,13 @@ class RateLimitFilterTest {
     private MockMvc mockMvc;
     private ChatService chatService;
     private ObjectMapper objectMapper;
+    private MeterRegistry registry;
 
     @BeforeEach
     void setup() {
         // Mock service and controller
         chatService = Mockito.mock(ChatService.class);
-        ChatController controller = new ChatController(chatService);
+        ChatController controller = new ChatController(chatService, new ObjectMapper());
 
         // Configure a strict rate limit: 2 requests per long window
         RateLimitProperties props = new RateLimitProperties();
@@ -38,10 +49,16 @@ class RateLimitFilterTest {
         props.setCapacity(2);
         props.setRefillTokens(2);
         props.setRefillPeriodSeconds(3600);
+        RateLimitProperties.Route bulk = new RateLimitProperties.Route();
+        bulk.setMethod("POST");
+        bulk.setPattern("/api/v1/session/bulk");
+        bulk.setWeight(10);
+        props.setRoutes(List.of(bulk));
         props.setPerApiKey(true);
         props.setIncludeHeaders(true);
 
-        RateLimitFilter rateLimitFilter = new RateLimitFilter(props);
+        registry = new SimpleMeterRegistry();
+        RateLimitFilter rateLimitFilter = new RateLimitFilter(props, registry);
 
         this.mockMvc = MockMvcBuilders.standaloneSetup(controller)
                 .addFilter(rateLimitFilter)
@@ -50,7 +67,7 @@ class RateLimitFilterTest {
         this.objectMapper = new ObjectMapper();
 
         Mockito.when(chatService.createSession(Mockito.any()))
-                .thenReturn(new SessionView(null, "u1", "t", false, null, null));
+                .thenReturn(new SessionView(null, "u1", "t", false, null, null, 0, null, 0));
     }
 
     @Test
@@ -87,5 +104,146 @@ class RateLimitFilterTest {
                 .andExpect(header().exists(HeaderConstants.RETRY_AFTER))
                 .andExpect(jsonPath("$.code").value("ERR_CS_RATE_01"))
                 .andExpect(jsonPath("$.message").value("Too many requests"));
+
+        assertThat(registry.get("chat.ratelimit.requests").tags("tier", "default", "result", "accepted").counter().count()).isEqualTo(2);
+        assertThat(registry.get("chat.ratelimit.requests").tags("tier", "default", "result", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("bulk calls are charged their weight, capped at the bucket capacity")
+    void rateLimit_bulkWeight() throws Exception {
+        var req = new Dtos.SessionBulkRequest(SessionBulkOperation.DELETE, List.of(UUID.randomUUID()));
+
+        mockMvc.perform(post("/api/v1/session/bulk")
+                        .header(HeaderConstants.API_KEY, "change-me-please")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_REMAINING, "0"));
+
+        mockMvc.perform(post("/api/v1/session")
+                        .header(HeaderConstants.API_KEY, "change-me-please")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Dtos.SessionCreate("u1", "t"))))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    @DisplayName("without an API key the first X-Forwarded-For address owns the bucket, whatever proxies follow it")
+    void rateLimit_forwardedFor() throws Exception {
+        for (String forwarded : List.of("203.0.113.7, 10.0.0.1", " 203.0.113.7 ")) {
+            mockMvc.perform(post("/api/v1/session")
+                            .header(HeaderConstants.FORWARDED_FOR, forwarded)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new Dtos.SessionCreate("u1", "t"))))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(post("/api/v1/session")
+                        .header(HeaderConstants.FORWARDED_FOR, "203.0.113.7,10.0.0.2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Dtos.SessionCreate("u1", "t"))))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(post("/api/v1/session")
+                        .header(HeaderConstants.FORWARDED_FOR, "198.51.100.1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Dtos.SessionCreate("u1", "t"))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("an API key on a tier gets its bandwidths: the burst limit is reported and enforced")
+    void rateLimit_apiKeyTier() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(100);
+        props.setRefillTokens(100);
+        RateLimitProperties.Tier premium = new RateLimitProperties.Tier();
+        premium.setApiKeys(List.of("premium-key"));
+        premium.setBandwidths(List.of(limit(3, Duration.ofHours(1)), limit(1000, Duration.ofDays(1))));
+        props.setTiers(Map.of("premium", premium));
+        MockMvc tiered = mockMvc(props);
+
+        for (int i = 0; i < 3; i++) {
+            tiered.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "premium-key"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HeaderConstants.RATE_LIMIT_LIMIT, "3"));
+        }
+        tiered.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "premium-key"))
+                .andExpect(status().isTooManyRequests());
+        tiered.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "other-key"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_LIMIT, "100"));
+    }
+
+    @Test
+    @DisplayName("a second key listed on a tier passes the API key filter and is limited by its own tier")
+    void rateLimit_tieredKeyThroughApiKeyFilter() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(100);
+        props.setRefillTokens(100);
+        RateLimitProperties.Tier partner = new RateLimitProperties.Tier();
+        partner.setApiKeys(List.of("partner-key"));
+        partner.setBandwidths(List.of(limit(2, Duration.ofHours(1))));
+        props.setTiers(Map.of("partner", partner));
+        MockMvc chain = MockMvcBuilders.standaloneSetup(new ChatController(chatService, new ObjectMapper()))
+                .addFilters(new ApiKeyFilter("service-key", props), new RateLimitFilter(props, new SimpleMeterRegistry()))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            chain.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "partner-key"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HeaderConstants.RATE_LIMIT_LIMIT, "2"));
+        }
+        chain.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "partner-key"))
+                .andExpect(status().isTooManyRequests());
+        chain.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "service-key"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_LIMIT, "100"));
+        chain.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "unknown-key"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("a route weight scales with the requested page size")
+    void rateLimit_sizeScaledWeight() throws Exception {
+        RateLimitProperties props = new RateLimitProperties();
+        props.setCapacity(100);
+        props.setRefillTokens(100);
+        RateLimitProperties.Route search = new RateLimitProperties.Route();
+        search.setMethod("GET");
+        search.setPattern("/api/v1/session/search");
+        search.setWeight(2);
+        search.setSizeParameter("size");
+        search.setSizeUnit(20);
+        props.setRoutes(List.of(search));
+        MockMvc weighted = mockMvc(props);
+
+        // 2 tokens per 20 rows: 100 rows cost 10
+        weighted.perform(get("/api/v1/session/search").param("userId", "u1").param("q", "x").param("size", "100")
+                        .header(HeaderConstants.API_KEY, "change-me-please"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_REMAINING, "90"));
+        // Without a size the base weight applies; other routes cost one token
+        weighted.perform(get("/api/v1/session/search").param("userId", "u1").param("q", "x")
+                        .header(HeaderConstants.API_KEY, "change-me-please"))
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_REMAINING, "88"));
+        weighted.perform(get("/api/v1/session").param("userId", "u1").header(HeaderConstants.API_KEY, "change-me-please"))
+                .andExpect(header().string(HeaderConstants.RATE_LIMIT_REMAINING, "87"));
+    }
+
+    private MockMvc mockMvc(RateLimitProperties props) {
+        return MockMvcBuilders.standaloneSetup(new ChatController(chatService, new ObjectMapper()))
+                .addFilter(new RateLimitFilter(props, new SimpleMeterRegistry()))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private static RateLimitProperties.Limit limit(long capacity, Duration period) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillTokens(capacity);
+        limit.setRefillPeriod(period);
+        return limit;
     }
 }